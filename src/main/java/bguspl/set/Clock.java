@@ -0,0 +1,57 @@
+package bguspl.set;
+
+/**
+ * An interface for all the game's time keeping and timed waits, so that games can also run on virtual time.
+ */
+public interface Clock {
+
+    /**
+     * @return - the current time in milliseconds.
+     */
+    long millis();
+
+    /**
+     * Sleeps for the specified number of milliseconds.
+     *
+     * @param millis - the time to sleep.
+     */
+    void sleep(long millis) throws InterruptedException;
+
+    /**
+     * Waits on a monitor until notified. The caller must hold the monitor.
+     *
+     * @param monitor - the object to wait on.
+     */
+    void waitOn(Object monitor) throws InterruptedException;
+
+    /**
+     * Waits on a monitor until notified or the specified time elapsed. The wait may also end earlier, so the caller
+     * must recheck both its condition and the time. The caller must hold the monitor.
+     *
+     * @param monitor - the object to wait on.
+     * @param millis  - the maximum time to wait.
+     */
+    void waitOn(Object monitor, long millis) throws InterruptedException;
+
+    /**
+     * Wakes all the threads waiting on a monitor (instead of monitor.notifyAll, so that the clock knows they are
+     * working again). The caller must hold the monitor.
+     *
+     * @param monitor - the object waited on.
+     */
+    void wake(Object monitor);
+
+    /**
+     * Registers a game thread whose waits must all be idle for time to advance (only relevant for virtual time).
+     *
+     * @param thread - the thread to register (before it starts).
+     */
+    void addParticipant(Thread thread);
+
+    /**
+     * Unregisters a game thread.
+     *
+     * @param thread - the thread to unregister.
+     */
+    void removeParticipant(Thread thread);
+}
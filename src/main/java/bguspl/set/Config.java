@@ -7,6 +7,7 @@ import java.nio.file.InvalidPathException;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -56,6 +57,16 @@ public class Config {
      */
     public final boolean hints;
 
+    /**
+     * Whether the dealer swaps deck cards into the table so that it always holds a legal set (if the cards allow it)
+     */
+    public final boolean smartDealing;
+
+    /**
+     * The maximum number of cards the dealer adds beyond the grid while the table holds no legal set (0 for none)
+     */
+    public final int maxExtraCards;
+
     /**
      * The number of milliseconds until the dealer reshuffles the deck (0 show timer since last action, -1 show nothing)
      */
@@ -86,6 +97,52 @@ public class Config {
      */
     public final long endGamePauseMillies;
 
+    /**
+     * The TCP port remote clients connect to (0 for no remote play)
+     */
+    public final int serverPort;
+
+    /**
+     * The number of worker threads that check claimed sets in parallel (0 checks them on the dealer thread)
+     */
+    public final int verifierThreads;
+
+    /**
+     * Whether to run the game on virtual time (as fast as possible, for simulations) instead of the system time
+     */
+    public final boolean virtualTime;
+
+    /**
+     * The seed for the deck shuffles and the computer players' decisions (random if not configured)
+     */
+    public final long seed;
+
+    /**
+     * The file to record the binary game journal to (empty for no journal)
+     */
+    public final String journalFile;
+
+    /**
+     * The file to export the key press latency trace to (empty for no tracing)
+     */
+    public final String traceFile;
+
+    /**
+     * Whether to measure the wait and hold times of the game's monitors and report them at the end of the game
+     */
+    public final boolean lockProfiling;
+
+    /**
+     * The name of the util engine to use (leave empty to pick the fastest engine by calibration)
+     */
+    public final String utilEngine;
+
+    /**
+     * The time (in milliseconds) to time each util engine for at startup (0 for the reference engine; unused when
+     * utilEngine names an engine)
+     */
+    public final long utilCalibrationMillis;
+
     /**
      * The names of the players to display on the screen
      * Note: if there are more players than names, the remaining players will be called "Player 3", "Player 4", etc.
@@ -107,6 +164,11 @@ public class Config {
      */
     public final int tableSize;
 
+    /**
+     * The maximum number of slots on the table (the grid slots and the extra slots)
+     */
+    public final int maxTableSize;
+
     /**
      * The width (in pixels) of each cell
      */
@@ -132,6 +194,16 @@ public class Config {
      */
     public final int fontSize;
 
+    /**
+     * The maximum frames per second of the terminal user interface used when there is no display (0 for none)
+     */
+    public final int terminalFrameRate;
+
+    /**
+     * Whether to create the user interface on a background thread while the dealer already starts dealing
+     */
+    public final boolean lazyUserInterface;
+
     /**
      * The scancodes of the keyboard input data for each player
      * Notes:
@@ -155,7 +227,7 @@ public class Config {
      * @param filename - the name of the configuration file.
      * @return - a properties object with the configuration file contents.
      */
-    private static Properties loadProperties(String filename, Logger logger) {
+    static Properties loadProperties(String filename, Logger logger) {
 
         Properties properties = new Properties();
 
@@ -166,6 +238,7 @@ public class Config {
         } catch (IOException e) {
             logger.severe("cannot read configuration file " + filename + " trying from resources.");
             try (InputStream is = Config.class.getClassLoader().getResourceAsStream(filename)) {
+                if (is == null) throw new IOException(filename + " is not a resource");
                 properties.load(is);
                 logger.severe("configuration file was loaded from resources directory.");
             } catch (IOException | InvalidPathException ex) {
@@ -204,12 +277,24 @@ public class Config {
         players = humanPlayers + computerPlayers;
 
         hints = Boolean.parseBoolean(properties.getProperty("Hints", "False"));
+        smartDealing = Boolean.parseBoolean(properties.getProperty("SmartDealing", "False"));
+        maxExtraCards = Integer.parseInt(properties.getProperty("MaxExtraCards", "0"));
         turnTimeoutMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutSeconds", "60")) * 1000.0);
         turnTimeoutWarningMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutWarningSeconds", "60")) * 1000.0);
         pointFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PointFreezeSeconds", "1")) * 1000.0);
         penaltyFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PenaltyFreezeSeconds", "3")) * 1000.0);
         tableDelayMillis = (long) (Double.parseDouble(properties.getProperty("TableDelaySeconds", "0.1")) * 1000.0);
         endGamePauseMillies = (long) (Double.parseDouble(properties.getProperty("EndGamePauseSeconds", "5")) * 1000.0);
+        serverPort = Integer.parseInt(properties.getProperty("ServerPort", "0"));
+        verifierThreads = Integer.parseInt(properties.getProperty("VerifierThreads", "0"));
+        virtualTime = Boolean.parseBoolean(properties.getProperty("VirtualTime", "False"));
+        String seedString = properties.getProperty("Seed", "").trim();
+        seed = seedString.isEmpty() ? ThreadLocalRandom.current().nextLong() : Long.parseLong(seedString);
+        journalFile = properties.getProperty("JournalFile", "").trim();
+        traceFile = properties.getProperty("TraceFile", "").trim();
+        lockProfiling = Boolean.parseBoolean(properties.getProperty("LockProfiling", "False"));
+        utilEngine = properties.getProperty("UtilEngine", "").trim();
+        utilCalibrationMillis = (long) (Double.parseDouble(properties.getProperty("UtilCalibrationSeconds", "0.02")) * 1000.0);
 
         // ui settings
         String[] names = properties.getProperty("PlayerNames", "Player 1, Player 2").split(",");
@@ -219,23 +304,27 @@ public class Config {
         rows = Integer.parseInt(properties.getProperty("Rows", "3"));
         columns = Integer.parseInt(properties.getProperty("Columns", "4"));
         tableSize = rows * columns;
+        maxTableSize = tableSize + maxExtraCards;
         cellWidth = Integer.parseInt(properties.getProperty("CellWidth", "258"));
         cellHeight = Integer.parseInt(properties.getProperty("CellHeight", "167"));
         playerCellWidth = Integer.parseInt(properties.getProperty("PlayerCellWidth", "300"));
         playerCellHeight = Integer.parseInt(properties.getProperty("PlayerCellHeight", "40"));
         fontSize = Integer.parseInt(properties.getProperty("FontSize", "40"));
+        terminalFrameRate = Integer.parseInt(properties.getProperty("TerminalFrameRate", "10"));
+        lazyUserInterface = Boolean.parseBoolean(properties.getProperty("LazyUserInterface", "False"));
 
         // keyboard input data
-        playerKeys = new int[players][rows * columns];
+        playerKeys = new int[players][maxTableSize];
         for (int i = 0; i < players; i++) {
             String defaultCodes = "";
             if (i < 2) defaultCodes = playerKeysDefaults[i];
             String playerKeysString = properties.getProperty("PlayerKeys" + (i + 1), defaultCodes);
             if (playerKeysString.length() > 0) {
                 String[] codes = playerKeysString.split(",");
-                if (codes.length != tableSize)
-                    logger.severe("warning: player " + (i + 1) + " keys (" + codes.length + ") mismatch table size (" + tableSize + ").");
-                for (int j = 0; j < Math.min(codes.length, tableSize); ++j) // parse the key codes string
+                if (codes.length < tableSize || codes.length > maxTableSize)
+                    logger.severe("warning: player " + (i + 1) + " keys (" + codes.length + ") out of the accepted range ("
+                            + (tableSize == maxTableSize ? tableSize : tableSize + "-" + maxTableSize) + ").");
+                for (int j = 0; j < Math.min(codes.length, maxTableSize); ++j) // parse the key codes string
                     playerKeys[i][j] = Integer.parseInt(codes[j]);
             }
         }
@@ -2,17 +2,68 @@ package bguspl.set;
 
 import java.util.logging.Logger;
 
+/**
+ * The game environment objects. The optional services (the journal, the clock, the tracer and the lock profiler)
+ * default to disabled ones (and the system clock), and are replaced with the with methods, e.g.
+ * new Env(logger, config, ui, util).withClock(new VirtualClock()).
+ */
 public class Env {
 
     public final Logger logger;
     public final Config config;
     public final UserInterface ui;
     public final Util util;
+    public final Journal journal;
+    public final Clock clock;
+    public final Tracer tracer;
+    public final LockProfiler locks;
 
     public Env(Logger logger, Config config, UserInterface ui, Util util) {
+        this(logger, config, ui, util, Journal.disabled(), new SystemClock(), Tracer.disabled(),
+                LockProfiler.disabled());
+    }
+
+    private Env(Logger logger, Config config, UserInterface ui, Util util, Journal journal, Clock clock, Tracer tracer,
+                LockProfiler locks) {
         this.logger = logger;
         this.config = config;
         this.ui = ui;
         this.util = util;
+        this.journal = journal;
+        this.clock = clock;
+        this.tracer = tracer;
+        this.locks = locks;
+    }
+
+    /**
+     * @param journal - the journal to record the game to.
+     * @return - a copy of this environment with the journal.
+     */
+    public Env withJournal(Journal journal) {
+        return new Env(logger, config, ui, util, journal, clock, tracer, locks);
+    }
+
+    /**
+     * @param clock - the clock to keep the game's time with.
+     * @return - a copy of this environment with the clock.
+     */
+    public Env withClock(Clock clock) {
+        return new Env(logger, config, ui, util, journal, clock, tracer, locks);
+    }
+
+    /**
+     * @param tracer - the tracer of the key press latencies.
+     * @return - a copy of this environment with the tracer.
+     */
+    public Env withTracer(Tracer tracer) {
+        return new Env(logger, config, ui, util, journal, clock, tracer, locks);
+    }
+
+    /**
+     * @param locks - the profiler of the game's monitors.
+     * @return - a copy of this environment with the lock profiler.
+     */
+    public Env withLocks(LockProfiler locks) {
+        return new Env(logger, config, ui, util, journal, clock, tracer, locks);
     }
 }
@@ -0,0 +1,297 @@
+package bguspl.set;
+
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.logging.Logger;
+
+/**
+ * A TCP server for remote play, handling all connections on a single selector thread.
+ * Remote clients join as one of the human players (or as spectators), send slot presses and receive the table,
+ * token, score, freeze and countdown updates.
+ * The protocol is a stream of fixed-size frames: [type (byte)][a (int)][b (int)].
+ */
+public class GameServer implements Runnable {
+
+    public static final int FRAME_SIZE = 9;
+
+    /**
+     * Client to server frames.
+     */
+    public static final byte JOIN = 1;           // a = requested player id (-1 to spectate)
+    public static final byte PRESS = 2;          // a = slot
+
+    /**
+     * Server to client frames.
+     */
+    public static final byte WELCOME = 10;       // a = granted player id (-1 for a spectator), b = table size
+    public static final byte CARD_PLACED = 11;   // a = card, b = slot
+    public static final byte CARD_REMOVED = 12;  // a = slot
+    public static final byte TOKEN_PLACED = 13;  // a = player, b = slot
+    public static final byte TOKEN_REMOVED = 14; // a = player, b = slot
+    public static final byte TOKENS_CLEARED = 15; // a = slot (-1 for all slots)
+    public static final byte SCORE = 16;         // a = player, b = score
+    public static final byte FREEZE = 17;        // a = player, b = freeze millis
+    public static final byte COUNTDOWN = 18;     // a = millis, b = 1 iff warning
+    public static final byte WINNER = 19;        // a = player
+
+    /**
+     * The number of unsent bytes after which a client that does not keep up is disconnected.
+     */
+    private static final int MAX_BACKLOG = 1 << 20;
+
+    private final Logger logger;
+    private final Config config;
+    private final Player[] players;
+    private Table table;
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread thread;
+    private volatile boolean terminate;
+
+    /**
+     * The connection controlling each player (null if none).
+     */
+    private final Connection[] controllers;
+
+    /**
+     * Frames broadcast by the game threads, waiting for the selector thread to hand them to all the clients.
+     */
+    private ByteBuffer broadcasts = ByteBuffer.allocate(4096);
+
+    /**
+     * The frames being handed to the clients (swapped with broadcasts, so that broadcasting never waits for it).
+     */
+    private ByteBuffer flushing = ByteBuffer.allocate(4096);
+
+    public GameServer(Logger logger, Config config, Player[] players) {
+        this.logger = logger;
+        this.config = config;
+        this.players = players;
+        this.controllers = new Connection[config.players];
+    }
+
+    /**
+     * Opens the server socket and starts the selector thread.
+     *
+     * @param table - the game table (for the snapshot sent to joining clients).
+     */
+    public void start(Table table) throws IOException {
+        this.table = table;
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(config.serverPort));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        thread = new Thread(this, "server");
+        thread.start();
+        logger.info("game server listening on port " + config.serverPort);
+    }
+
+    /**
+     * The selector thread starts here.
+     */
+    @Override
+    public void run() {
+        logger.info("Thread " + Thread.currentThread().getName() + " starting.");
+        try {
+            while (!terminate) {
+                selector.select();
+                flushBroadcasts();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) continue;
+                        if (key.isAcceptable()) accept();
+                        else {
+                            if (key.isReadable()) read(key);
+                            if (key.isValid() && key.isWritable()) write(key);
+                        }
+                    } catch (IOException e) {
+                        disconnect(key);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.severe("game server failed: " + e.getMessage());
+        }
+        logger.info("Thread " + Thread.currentThread().getName() + " terminated.");
+    }
+
+    /**
+     * @return - the port the server listens on (e.g. the one picked by the system for port 0).
+     */
+    public int port() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Stops the selector thread and closes all connections.
+     */
+    public void close() {
+        terminate = true;
+        if (selector == null) return;
+        selector.wakeup();
+        try {
+            thread.join();
+            for (SelectionKey key : selector.keys())
+                key.channel().close();
+            selector.close();
+        } catch (IOException | InterruptedException ignored) {
+        }
+    }
+
+    /**
+     * Sends a frame to all the clients (may be called from any thread).
+     */
+    public void broadcast(byte type, int a, int b) {
+        if (selector == null) return;
+        synchronized (this) {
+            if (broadcasts.remaining() < FRAME_SIZE) {
+                ByteBuffer larger = ByteBuffer.allocate(broadcasts.capacity() * 2);
+                broadcasts.flip();
+                broadcasts = larger.put(broadcasts);
+            }
+            broadcasts.put(type).putInt(a).putInt(b);
+        }
+        selector.wakeup();
+    }
+
+    private void flushBroadcasts() {
+        ByteBuffer frames;
+        synchronized (this) {
+            if (broadcasts.position() == 0) return;
+            frames = broadcasts;
+            broadcasts = flushing;
+            flushing = frames;
+        }
+        frames.flip();
+        for (SelectionKey key : selector.keys()) {
+            if (!key.isValid() || !(key.attachment() instanceof Connection)) continue;
+            Connection connection = (Connection) key.attachment();
+            if (!connection.joined) continue;
+            connection.send(frames.duplicate());
+            if (connection.backlog() > MAX_BACKLOG) disconnect(key);
+            else key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+        frames.clear();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        if (connection.channel.read(connection.in) < 0) throw new IOException("closed by client");
+        connection.in.flip();
+        while (connection.in.remaining() >= FRAME_SIZE) {
+            byte type = connection.in.get();
+            int a = connection.in.getInt();
+            connection.in.getInt();
+            if (type == JOIN) join(key, connection, a);
+            else if (type == PRESS && connection.player >= 0 && a >= 0 && a < table.size())
+                players[connection.player].keyPressed(a);
+        }
+        connection.in.compact();
+        if (connection.out.position() > 0) key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    private void join(SelectionKey key, Connection connection, int player) {
+        if (connection.player < 0 && player >= 0 && player < config.humanPlayers && controllers[player] == null) {
+            controllers[player] = connection;
+            connection.player = player;
+        }
+        // the table's updates are broadcast under its monitor, so under it the queued broadcasts are exactly the ones
+        // already in the snapshot: they go to the joined clients only, and this client gets the snapshot instead
+        synchronized (table) {
+            flushBroadcasts();
+            connection.joined = true;
+            connection.send(WELCOME, connection.player, table.size());
+            for (int slot = 0; slot < table.size(); slot++) {
+                int card = table.cardAt(slot);
+                if (card != Table.EMPTY) connection.send(CARD_PLACED, card, slot);
+                for (int p = table.nextTokenOwner(slot, 0); p >= 0; p = table.nextTokenOwner(slot, p + 1))
+                    connection.send(TOKEN_PLACED, p, slot);
+            }
+        }
+        for (int p = 0; p < players.length; p++)
+            connection.send(SCORE, p, players[p].score());
+        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        connection.out.flip();
+        connection.channel.write(connection.out);
+        connection.out.compact();
+        if (connection.out.position() == 0) key.interestOps(SelectionKey.OP_READ);
+    }
+
+    private void disconnect(SelectionKey key) {
+        key.cancel();
+        if (!(key.attachment() instanceof Connection)) return;
+        Connection connection = (Connection) key.attachment();
+        if (connection.player >= 0) controllers[connection.player] = null;
+        try {
+            connection.channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * A client connection (accessed only by the selector thread).
+     */
+    private static class Connection {
+
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(FRAME_SIZE * 64);
+        ByteBuffer out = ByteBuffer.allocate(FRAME_SIZE * 64);
+        int player = -1;
+
+        /**
+         * True once the connection got the snapshot (and then the broadcasts).
+         */
+        boolean joined;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void send(byte type, int a, int b) {
+            reserve(FRAME_SIZE);
+            out.put(type).putInt(a).putInt(b);
+        }
+
+        void send(ByteBuffer frames) {
+            reserve(frames.remaining());
+            out.put(frames);
+        }
+
+        int backlog() {
+            return out.position();
+        }
+
+        private void reserve(int bytes) {
+            if (out.remaining() >= bytes) return;
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes));
+            out.flip();
+            out = larger.put(out);
+        }
+    }
+}
@@ -5,19 +5,44 @@ import bguspl.set.ex.Player;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * This class handles the input from the keyboard, translates it to table grid slots and dispatches accordingly.
+ * Key presses are time stamped on the event thread and handed over through a lock-free ring buffer to an input
+ * thread that delivers them to the players, so the event thread never blocks on the game (and vice versa).
  */
 class InputManager extends KeyAdapter {
 
     private static final int MAX_KEY_CODE = 255;
+
+    /**
+     * The number of key presses the ring buffer holds before presses are dropped.
+     */
+    private static final int RING_CAPACITY = 1024;
+
+    /**
+     * The number of dispatched key presses per latency report.
+     */
+    private static final int LATENCY_REPORT_PRESSES = 64;
+
     private final Player[] players;
     int[] keyMap = new int[MAX_KEY_CODE + 1];
     int[] keyToSlot = new int[MAX_KEY_CODE + 1];
     private final Logger logger;
 
+    private final KeyEventRing ring = new KeyEventRing(RING_CAPACITY);
+    private final Thread dispatcher;
+
+    /**
+     * Event thread to player latency statistics (accessed only by the input thread).
+     */
+    private int dispatched;
+    private long totalLatency;
+    private long maxLatency;
+
     public InputManager(Logger logger, Config config, Player[] players) {
         this.players = players;
         this.logger = logger;
@@ -26,10 +51,15 @@ class InputManager extends KeyAdapter {
         for (int player = 0; player < config.players; ++player)
             for (int i = 0; i < config.playerKeys(player).length; i++) {
                 int keyCode = config.playerKeys(player)[i];
+                if (keyCode == 0) continue; // no key for this slot (e.g. an extra slot)
                 if (keyCode >= keyMap.length) reallocArrays(keyCode); // enlarge the array for higher key codes
                 keyMap[keyCode] = player + 1; // 1 for first player and 2 for second player
                 keyToSlot[keyCode] = i;
             }
+
+        dispatcher = new Thread(this::dispatch, "input");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
     }
 
     private void reallocArrays(int keyCode) {
@@ -39,12 +69,45 @@ class InputManager extends KeyAdapter {
 
     @Override
     public void keyPressed(KeyEvent e) {
-        // dispatch the key event to the player according to the key map
+        // queue the key event for the player according to the key map
+        long stamp = System.nanoTime();
         int keyCode = e.getKeyCode();
+        if (keyCode >= keyMap.length) return;
         int player = keyMap[keyCode] - 1;
-        if (player >= 0){
-            logger.severe("key " + keyCode + " was pressed by player " + (player + 1));
-            players[player].keyPressed(keyToSlot[keyCode]);
+        if (player >= 0) {
+            if (ring.offer(player << 16 | keyToSlot[keyCode], stamp)) LockSupport.unpark(dispatcher);
+            else logger.warning("input buffer full, key press dropped");
+        }
+    }
+
+    /**
+     * The input thread: delivers the queued key presses to the players.
+     */
+    private void dispatch() {
+        while (true) {
+            if (ring.isEmpty()) {
+                LockSupport.park(this);
+                continue;
+            }
+            int event = ring.peekEvent();
+            long stamp = ring.peekStamp();
+            ring.remove();
+            Player player = players[event >>> 16];
+            if (player != null) player.keyPressed(event & 0xFFFF, stamp);
+            recordLatency(System.nanoTime() - stamp);
+        }
+    }
+
+    private void recordLatency(long nanos) {
+        totalLatency += nanos;
+        maxLatency = Math.max(maxLatency, nanos);
+        if (++dispatched == LATENCY_REPORT_PRESSES) {
+            if (logger.isLoggable(Level.FINE))
+                logger.fine("input latency over " + dispatched + " key presses: avg " + totalLatency / dispatched / 1000
+                        + "us max " + maxLatency / 1000 + "us");
+            dispatched = 0;
+            totalLatency = 0;
+            maxLatency = 0;
         }
     }
 }
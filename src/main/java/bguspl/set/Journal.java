@@ -0,0 +1,206 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Logger;
+
+/**
+ * An append-only binary journal of every game state change, backed by a memory-mapped file.
+ * Each event is a fixed-size record of RECORD_SIZE bytes:
+ * [time (long, nanos since the journal was opened)][type (int)][player (int)][a (int)][b (int)][c (int)][unused (int)]
+ * The first record of the file is a header: [MAGIC][VERSION][RECORD_SIZE][start time (long, epoch millis)][players].
+ */
+public class Journal {
+
+    public static final int MAGIC = 0x53455431; // "SET1"
+    public static final int VERSION = 1;
+    public static final int RECORD_SIZE = 32;
+
+    /**
+     * Record types (0 marks the unused tail of the mapped region).
+     */
+    public static final int END = 0;
+    public static final int CARD_PLACED = 1;   // a = card, b = slot
+    public static final int CARD_REMOVED = 2;  // a = card, b = slot
+    public static final int TOKEN_PLACED = 3;  // player, a = slot
+    public static final int TOKEN_REMOVED = 4; // player, a = slot
+    public static final int CLAIM = 5;         // player, a b c = cards
+    public static final int VERDICT = 6;       // player, a = 1 iff legal set
+    public static final int FREEZE = 7;        // player, a = freeze millis
+    public static final int RESHUFFLE = 8;     // a = cards left in the deck
+
+    /**
+     * The number of bytes the mapped region grows by when it is full.
+     */
+    private static final int CHUNK_SIZE = RECORD_SIZE * 64 * 1024;
+
+    private final Logger logger;
+    private final Path path;
+    private final FileChannel channel;
+    private final long startNanos;
+
+    private MappedByteBuffer buffer;
+    private long mappedOffset;
+    private long position;
+    private boolean closed;
+
+    private Journal(Logger logger, Path path, FileChannel channel) {
+        this.logger = logger;
+        this.path = path;
+        this.channel = channel;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Creates a journal that records nothing.
+     *
+     * @return - a disabled journal.
+     */
+    public static Journal disabled() {
+        return new Journal(null, null, null);
+    }
+
+    /**
+     * Opens (truncates) the journal file. If the file name is empty or the file cannot be created, a disabled
+     * journal is returned.
+     *
+     * @param logger   - the logger to report errors to.
+     * @param filename - the journal file name.
+     * @param players  - the number of players in the recorded game.
+     * @return - the journal object.
+     */
+    public static Journal open(Logger logger, String filename, int players) {
+        if (filename == null || filename.isEmpty()) return disabled();
+        Path path = Paths.get(filename);
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            Journal journal = new Journal(logger, path, channel);
+            journal.writeHeader(System.currentTimeMillis(), players);
+            logger.info("recording game journal to " + path.toAbsolutePath());
+            return journal;
+        } catch (IOException e) {
+            logger.severe("cannot open journal file " + filename + ": " + e.getMessage());
+            return disabled();
+        }
+    }
+
+    /**
+     * @return - true iff events are being recorded.
+     */
+    public boolean enabled() {
+        return channel != null;
+    }
+
+    public void cardPlaced(int card, int slot) {
+        append(CARD_PLACED, -1, card, slot, -1);
+    }
+
+    public void cardRemoved(int card, int slot) {
+        append(CARD_REMOVED, -1, card, slot, -1);
+    }
+
+    public void tokenPlaced(int player, int slot) {
+        append(TOKEN_PLACED, player, slot, -1, -1);
+    }
+
+    public void tokenRemoved(int player, int slot) {
+        append(TOKEN_REMOVED, player, slot, -1, -1);
+    }
+
+    public void claim(int player, int[] cards) {
+        append(CLAIM, player, cards[0], cards[1], cards[2]);
+    }
+
+    public void verdict(int player, boolean legal) {
+        append(VERDICT, player, legal ? 1 : 0, -1, -1);
+    }
+
+    public void freeze(int player, long millis) {
+        append(FREEZE, player, (int) millis, -1, -1);
+    }
+
+    public void reshuffle(int deckSize) {
+        append(RESHUFFLE, -1, deckSize, -1, -1);
+    }
+
+    private void writeHeader(long startMillis, int players) throws IOException {
+        remap(0);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).putLong(startMillis).putInt(players);
+        position = RECORD_SIZE;
+    }
+
+    private void remap(long offset) throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, offset, CHUNK_SIZE);
+        mappedOffset = offset;
+    }
+
+    /**
+     * Appends a single record to the journal.
+     */
+    private synchronized void append(int type, int player, int a, int b, int c) {
+        if (channel == null || closed) return;
+        try {
+            if (position - mappedOffset + RECORD_SIZE > CHUNK_SIZE) remap(position);
+            int offset = (int) (position - mappedOffset);
+            buffer.putLong(offset, System.nanoTime() - startNanos);
+            buffer.putInt(offset + 8, type);
+            buffer.putInt(offset + 12, player);
+            buffer.putInt(offset + 16, a);
+            buffer.putInt(offset + 20, b);
+            buffer.putInt(offset + 24, c);
+            position += RECORD_SIZE;
+        } catch (IOException e) {
+            logger.severe("journal write failed, recording stopped: " + e.getMessage());
+            closed = true;
+        }
+    }
+
+    /**
+     * Flushes the journal and trims the file to the records actually written.
+     */
+    public synchronized void close() {
+        if (channel == null || closed) return;
+        closed = true;
+        try {
+            buffer.force();
+            buffer = null;
+            channel.truncate(position);
+            channel.close();
+            logger.info("journal " + path + " closed with " + (position / RECORD_SIZE - 1) + " records.");
+        } catch (IOException e) {
+            logger.severe("cannot close journal file " + path + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Maps a journal file for reading.
+     *
+     * @param filename - the journal file name.
+     * @return - a read-only buffer positioned at the first record (after the header, see players).
+     * @throws IOException - if the file cannot be read or is not a journal file.
+     */
+    public static ByteBuffer read(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < RECORD_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                    || buffer.getInt(8) != RECORD_SIZE)
+                throw new IOException(filename + " is not a game journal");
+            buffer.position(RECORD_SIZE);
+            return buffer;
+        }
+    }
+
+    /**
+     * @param records - a buffer returned by read.
+     * @return - the number of players in the recorded game.
+     */
+    public static int players(ByteBuffer records) {
+        return records.getInt(20);
+    }
+}
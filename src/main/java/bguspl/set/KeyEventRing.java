@@ -0,0 +1,80 @@
+package bguspl.set;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free single producer / single consumer ring buffer of time stamped key events.
+ *
+ * @inv 0 <= tail - head <= capacity
+ */
+class KeyEventRing {
+
+    private final int mask;
+    private final int[] events;
+    private final long[] stamps;
+
+    /**
+     * The next position to write (written only by the producer).
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The next position to read (written only by the consumer).
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * @param capacity - the ring capacity (rounded up to a power of 2).
+     */
+    KeyEventRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        events = new int[size];
+        stamps = new long[size];
+    }
+
+    /**
+     * Adds an event (producer only).
+     *
+     * @param event - the event.
+     * @param stamp - the event time (System.nanoTime).
+     * @return - false iff the ring is full and the event was dropped.
+     */
+    boolean offer(int event, long stamp) {
+        long t = tail.get();
+        if (t - head.get() > mask) return false;
+        int index = (int) t & mask;
+        events[index] = event;
+        stamps[index] = stamp;
+        tail.lazySet(t + 1); // publishes the entry
+        return true;
+    }
+
+    /**
+     * @return - true iff there are no events to consume.
+     */
+    boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+
+    /**
+     * @return - the oldest event (consumer only, the ring must not be empty).
+     */
+    int peekEvent() {
+        return events[(int) head.get() & mask];
+    }
+
+    /**
+     * @return - the time stamp of the oldest event (consumer only, the ring must not be empty).
+     */
+    long peekStamp() {
+        return stamps[(int) head.get() & mask];
+    }
+
+    /**
+     * Removes the oldest event (consumer only).
+     */
+    void remove() {
+        head.lazySet(head.get() + 1);
+    }
+}
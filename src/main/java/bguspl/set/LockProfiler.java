@@ -0,0 +1,207 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the time threads wait for the game's monitors and hold them, per monitor and per call site.
+ * A critical section is instrumented as:
+ * <pre>
+ * long requested = env.locks.request();
+ * synchronized (monitor) {
+ *     try (LockProfiler.Hold hold = env.locks.hold(SITE, requested)) { ... }
+ * }
+ * </pre>
+ * where SITE is "monitor:call site". When disabled, the calls only check a flag (and allocate nothing).
+ */
+public class LockProfiler {
+
+    /**
+     * An acquisition that waited longer than this (in nanoseconds) counts as contended.
+     */
+    private static final long CONTENDED_NANOS = 1000;
+
+    /**
+     * The statistics of a call site.
+     */
+    private static class Site {
+
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong contended = new AtomicLong();
+        final AtomicLong totalWait = new AtomicLong();
+        final AtomicLong maxWait = new AtomicLong();
+        final AtomicLong totalHold = new AtomicLong();
+        final AtomicLong maxHold = new AtomicLong();
+    }
+
+    /**
+     * A held monitor, whose hold time is recorded when it is closed (right before leaving the monitor).
+     */
+    public class Hold implements AutoCloseable {
+
+        private final String site;
+        private final long acquired;
+
+        private Hold(String site, long acquired) {
+            this.site = site;
+            this.acquired = acquired;
+        }
+
+        @Override
+        public void close() {
+            released(site, acquired);
+        }
+    }
+
+    private final boolean enabled;
+
+    /**
+     * The hold returned when disabled (records nothing).
+     */
+    private final Hold none = new Hold(null, 0);
+    private final Map<String, Site> sites = new ConcurrentHashMap<>();
+
+    private LockProfiler(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return - a profiler that measures nothing.
+     */
+    public static LockProfiler disabled() {
+        return new LockProfiler(false);
+    }
+
+    /**
+     * @param enabled - true iff the monitors should be measured.
+     * @return - the profiler.
+     */
+    public static LockProfiler create(boolean enabled) {
+        return new LockProfiler(enabled);
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Called before entering a monitor.
+     *
+     * @return - the current time (0 if disabled).
+     */
+    public long request() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Called right after entering a monitor.
+     *
+     * @param site      - the monitor and call site.
+     * @param requested - the time returned by request.
+     * @return - the current time (0 if disabled).
+     */
+    public long acquired(String site, long requested) {
+        if (!enabled) return 0;
+        long now = System.nanoTime();
+        Site stats = site(site);
+        stats.count.incrementAndGet();
+        recordWait(stats, now - requested);
+        return now;
+    }
+
+    /**
+     * Called right after entering a monitor, for timing the section in a try-with-resources statement.
+     *
+     * @param site      - the monitor and call site.
+     * @param requested - the time returned by request.
+     * @return - the hold to close right before leaving the monitor.
+     */
+    public Hold hold(String site, long requested) {
+        return enabled ? new Hold(site, acquired(site, requested)) : none;
+    }
+
+    /**
+     * Called right before leaving a monitor.
+     *
+     * @param site     - the monitor and call site.
+     * @param acquired - the time returned by acquired.
+     */
+    public void released(String site, long acquired) {
+        if (!enabled) return;
+        long hold = System.nanoTime() - acquired;
+        Site stats = site(site);
+        stats.totalHold.addAndGet(hold);
+        stats.maxHold.accumulateAndGet(hold, Math::max);
+    }
+
+    /**
+     * Records a wait for a notification on a monitor (e.g. a player waiting for the dealer's verdict).
+     *
+     * @param site  - the monitor and call site.
+     * @param since - the time returned by request before waiting.
+     */
+    public void waited(String site, long since) {
+        if (!enabled) return;
+        Site stats = site(site);
+        stats.count.incrementAndGet();
+        recordWait(stats, System.nanoTime() - since);
+    }
+
+    private void recordWait(Site stats, long wait) {
+        if (wait > CONTENDED_NANOS) stats.contended.incrementAndGet();
+        stats.totalWait.addAndGet(wait);
+        stats.maxWait.accumulateAndGet(wait, Math::max);
+    }
+
+    private Site site(String site) {
+        Site stats = sites.get(site);
+        return stats != null ? stats : sites.computeIfAbsent(site, name -> new Site());
+    }
+
+    /**
+     * @return - a table of the wait and hold times (in microseconds) per monitor and per call site, the monitors and
+     * the call sites of each monitor ordered by their total wait time.
+     */
+    public String report() {
+        Map<String, List<Map.Entry<String, Site>>> monitors = new TreeMap<>();
+        for (Map.Entry<String, Site> entry : sites.entrySet()) {
+            String monitor = entry.getKey().substring(0, Math.max(0, entry.getKey().indexOf(':')));
+            monitors.computeIfAbsent(monitor, name -> new ArrayList<>()).add(entry);
+        }
+        List<String> order = new ArrayList<>(monitors.keySet());
+        order.sort((a, b) -> Long.compare(totalWait(monitors.get(b)), totalWait(monitors.get(a))));
+
+        StringBuilder sb = new StringBuilder(String.format("%-36s %10s %9s %12s %10s %12s %10s%n",
+                "monitor:call site", "count", "contended", "wait us", "max wait", "hold us", "max hold"));
+        for (String monitor : order) {
+            List<Map.Entry<String, Site>> entries = monitors.get(monitor);
+            long count = 0, contended = 0, hold = 0;
+            for (Map.Entry<String, Site> entry : entries) {
+                count += entry.getValue().count.get();
+                contended += entry.getValue().contended.get();
+                hold += entry.getValue().totalHold.get();
+            }
+            sb.append(String.format("%-36s %10d %9d %12d %10s %12d %10s%n",
+                    monitor, count, contended, totalWait(entries) / 1000, "", hold / 1000, ""));
+            entries.sort((a, b) -> Long.compare(b.getValue().totalWait.get(), a.getValue().totalWait.get()));
+            for (Map.Entry<String, Site> entry : entries) {
+                Site stats = entry.getValue();
+                sb.append(String.format("  %-34s %10d %9d %12d %10d %12d %10d%n", entry.getKey(), stats.count.get(),
+                        stats.contended.get(), stats.totalWait.get() / 1000, stats.maxWait.get() / 1000,
+                        stats.totalHold.get() / 1000, stats.maxHold.get() / 1000));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static long totalWait(List<Map.Entry<String, Site>> entries) {
+        long wait = 0;
+        for (Map.Entry<String, Site> entry : entries)
+            wait += entry.getValue().totalWait.get();
+        return wait;
+    }
+}
@@ -4,12 +4,15 @@ import bguspl.set.ex.Dealer;
 import bguspl.set.ex.Player;
 import bguspl.set.ex.Table;
 
+import java.awt.GraphicsEnvironment;
 import java.io.File;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.Properties;
+import java.util.function.UnaryOperator;
 import java.util.logging.*;
 
 /**
@@ -36,28 +39,50 @@ public class Main {
      * @param args - unused.
      */
     public static void main(String[] args) {
+        run(initialize(), UnaryOperator.identity());
+    }
+
+    /**
+     * Creates the logger and loads the configuration file.
+     *
+     * @return - the game configuration.
+     */
+    static Config initialize() {
+        logger = initLogger();
+        ThreadLogger.logStart(logger, Thread.currentThread().getName());
+        return loadConfig();
+    }
+
+    /**
+     * Runs a game in the current thread (after {@link #initialize()}), until it ends.
+     *
+     * @param config   - the game configuration.
+     * @param decorate - applied to the user interface before the game starts (e.g. the startup benchmark uses it to
+     *                 see the first card).
+     */
+    static void run(Config config, UnaryOperator<UserInterface> decorate) {
 
         mainThread = Thread.currentThread();
 
         // create the game environment objects
-        logger = initLogger();
-        ThreadLogger.logStart(logger, Thread.currentThread().getName());
-        Config config = new Config(logger, "config.properties");
-        Util util = new UtilImpl(config);
+        Util util = UtilCalibration.select(logger, config).create(config);
 
         Player[] players = new Player[config.players];
-        UserInterface ui = null;
-        try {
-            ui = new UserInterfaceSwing(logger, config, players);
-        } catch (UnsupportedOperationException | IllegalArgumentException e) {
-            logger.severe("error creating swing user interface: " + e.getMessage());
-            logger.severe("will try to run without user interface");
-            if (config.humanPlayers > 0)
-                logger.severe("warning: running with human players with no user interface");
+        UserInterface ui = config.lazyUserInterface
+                ? new UserInterfaceLazy(() -> createUserInterface(config, util, players))
+                : createUserInterface(config, util, players);
+        GameServer server = null;
+        if (config.serverPort > 0) {
+            server = new GameServer(logger, config, players);
+            ui = new UserInterfaceRemote(ui, server);
         }
-        ui = new UserInterfaceDecorator(logger, util, ui);
+        ui = decorate.apply(new UserInterfaceDecorator(logger, util, ui));
 
-        Env env = new Env(logger, config, ui, util);
+        Env env = new Env(logger, config, ui, util)
+                .withJournal(Journal.open(logger, config.journalFile, config.players))
+                .withClock(config.virtualTime ? new VirtualClock() : new SystemClock())
+                .withTracer(Tracer.create(config.traceFile))
+                .withLocks(LockProfiler.create(config.lockProfiling));
 
         // create the game entities
         Table table = new Table(env);
@@ -65,6 +90,12 @@ public class Main {
         for (int i = 0; i < players.length; i++)
             players[i] = new Player(env, dealer, table, i, i < env.config.humanPlayers);
 
+        if (server != null) try {
+            server.start(table);
+        } catch (IOException e) {
+            logger.severe("cannot start the game server: " + e.getMessage());
+        }
+
         // start the dealer thread
         ThreadLogger dealerThread = new ThreadLogger(dealer, "dealer", logger);
         dealerThread.startWithLog();
@@ -72,17 +103,63 @@ public class Main {
         try {
             // shutdown stuff
             dealerThread.joinWithLog();
-            if (!xButtonPressed && config.endGamePauseMillies > 0) Thread.sleep(config.endGamePauseMillies);
+            if (!xButtonPressed && config.endGamePauseMillies > 0) env.clock.sleep(config.endGamePauseMillies);
         } catch (InterruptedException ignored) {
         } finally {
             logger.severe("thanks for playing... it was fun!");
             System.out.println("Thanks for playing... it was fun!");
             ThreadLogger.logStop(logger, Thread.currentThread().getName());
             if (!xButtonPressed) env.ui.dispose();
+            env.journal.close();
+            if (env.locks.enabled()) logger.info("monitor contention:\n" + env.locks.report());
+            if (env.tracer.enabled()) try {
+                logger.info("key press latencies:\n" + env.tracer.report());
+                env.tracer.export();
+            } catch (IOException e) {
+                logger.severe("cannot export the trace: " + e.getMessage());
+            }
+            if (server != null) server.close();
             for (Handler h : logger.getHandlers()) h.flush();
         }
     }
 
+    /**
+     * Loads the configuration file, with no extra cards when the swing user interface (whose grid is fixed) is used.
+     *
+     * @return - the game configuration.
+     */
+    private static Config loadConfig() {
+        Properties properties = Config.loadProperties("config.properties", logger);
+        Config config = new Config(logger, properties);
+        if (config.maxExtraCards > 0 && !GraphicsEnvironment.isHeadless()) {
+            logger.severe("warning: the swing user interface has no extra slots, running with MaxExtraCards=0");
+            properties.setProperty("MaxExtraCards", "0");
+            config = new Config(logger, properties);
+        }
+        return config;
+    }
+
+    /**
+     * Creates the swing user interface, or the terminal user interface if there is no display.
+     *
+     * @return - the user interface, or null if none could be created.
+     */
+    private static UserInterface createUserInterface(Config config, Util util, Player[] players) {
+        try {
+            return new UserInterfaceSwing(logger, config, players);
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            logger.severe("error creating swing user interface: " + e.getMessage());
+            if (config.humanPlayers > 0)
+                logger.severe("warning: running with human players with no keyboard input");
+            if (config.terminalFrameRate > 0) {
+                logger.severe("will run with a terminal user interface");
+                return new UserInterfaceTerminal(config, util, System.out);
+            }
+            logger.severe("will try to run without user interface");
+            return null;
+        }
+    }
+
     private static Logger initLogger() {
 
         //just to make our log file nicer :)
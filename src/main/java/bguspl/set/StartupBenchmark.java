@@ -0,0 +1,159 @@
+package bguspl.set;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the time from launching the game to the first card dealt on the table.
+ * Every run starts a new JVM that runs the game's main function (with the config.properties of the working directory)
+ * and exits as soon as the dealer places the first card. The time includes the first TableDelaySeconds.
+ * <p>
+ * Usage: StartupBenchmark [runs] [jvm options...], e.g. to compare with the class-data sharing archive of the build:
+ * <pre>
+ * java -cp target/Set_Card_Game-1.0-SNAPSHOT.jar bguspl.set.StartupBenchmark 10
+ * java -cp target/Set_Card_Game-1.0-SNAPSHOT.jar bguspl.set.StartupBenchmark 10 -XX:SharedArchiveFile=target/Set_Card_Game-1.0-SNAPSHOT.jsa
+ * </pre>
+ * The build's training run (the cds profile) runs this class with --child, which is a single run in this JVM.
+ */
+public class StartupBenchmark {
+
+    private static final String CHILD = "--child";
+    private static final String RESULT = "first card dealt";
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 0 && args[0].equals(CHILD)) {
+            runChild();
+            return;
+        }
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        List<String> jvmOptions = Arrays.asList(args).subList(Math.min(1, args.length), args.length);
+
+        long[] millis = new long[runs];
+        for (int run = 0; run < runs; run++)
+            millis[run] = runOnce(jvmOptions);
+        System.out.print(report(millis));
+    }
+
+    /**
+     * Runs the game in this JVM, and exits it when the first card is placed.
+     */
+    private static void runChild() {
+        Main.run(Main.initialize(), FirstCard::new);
+    }
+
+    /**
+     * Launches a JVM that runs the game until the first card.
+     *
+     * @return - the milliseconds from launching the JVM to the first card.
+     */
+    private static long runOnce(List<String> jvmOptions) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(jvmOptions);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(StartupBenchmark.class.getName());
+        command.add(CHILD);
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        long millis = -1;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine())
+                if (line.equals(RESULT) && millis < 0) millis = (System.nanoTime() - start) / 1000000;
+        }
+        if (process.waitFor() != 0 || millis < 0)
+            throw new IllegalStateException("the game did not deal a card (exit code " + process.exitValue() + ")");
+        return millis;
+    }
+
+    /**
+     * @param millis - the milliseconds from launching each JVM to the first card.
+     * @return - the number of runs and the minimum, median and maximum time.
+     */
+    static String report(long[] millis) {
+        long[] sorted = millis.clone();
+        Arrays.sort(sorted);
+        return String.format("time to first card: %d runs, min %d ms, median %d ms, max %d ms%n", sorted.length,
+                sorted[0], sorted[sorted.length / 2], sorted[sorted.length - 1]);
+    }
+
+    /**
+     * Passes every update on to the game's user interface, and ends the run on the first card.
+     */
+    private static class FirstCard implements UserInterface {
+
+        private final UserInterface ui;
+
+        FirstCard(UserInterface ui) {
+            this.ui = ui;
+        }
+
+        @Override
+        public void placeCard(int card, int slot) {
+            ui.placeCard(card, slot);
+            System.out.println(RESULT);
+            System.exit(0);
+        }
+
+        @Override
+        public void removeCard(int slot) {
+            ui.removeCard(slot);
+        }
+
+        @Override
+        public void placeToken(int player, int slot) {
+            ui.placeToken(player, slot);
+        }
+
+        @Override
+        public void removeTokens() {
+            ui.removeTokens();
+        }
+
+        @Override
+        public void removeTokens(int slot) {
+            ui.removeTokens(slot);
+        }
+
+        @Override
+        public void removeToken(int player, int slot) {
+            ui.removeToken(player, slot);
+        }
+
+        @Override
+        public void setCountdown(long millies, boolean warn) {
+            ui.setCountdown(millies, warn);
+        }
+
+        @Override
+        public void setElapsed(long millies) {
+            ui.setElapsed(millies);
+        }
+
+        @Override
+        public void setFreeze(int player, long millies) {
+            ui.setFreeze(player, millies);
+        }
+
+        @Override
+        public void setScore(int player, int score) {
+            ui.setScore(player, score);
+        }
+
+        @Override
+        public void announceWinner(int[] players) {
+            ui.announceWinner(players);
+        }
+
+        @Override
+        public void dispose() {
+            ui.dispose();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package bguspl.set;
+
+/**
+ * The implementation of the Clock interface using the system time.
+ */
+public class SystemClock implements Clock {
+
+    @Override
+    public long millis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        if (millis > 0) Thread.sleep(millis);
+    }
+
+    @Override
+    public void waitOn(Object monitor) throws InterruptedException {
+        monitor.wait();
+    }
+
+    @Override
+    public void waitOn(Object monitor, long millis) throws InterruptedException {
+        if (millis > 0) monitor.wait(millis);
+    }
+
+    @Override
+    public void wake(Object monitor) {
+        monitor.notifyAll();
+    }
+
+    @Override
+    public void addParticipant(Thread thread) {}
+
+    @Override
+    public void removeParticipant(Thread thread) {}
+}
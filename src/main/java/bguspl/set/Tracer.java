@@ -0,0 +1,172 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Traces key presses through the game's stages and aggregates the latency of each stage.
+ * Every key press gets a trace id; each stage it reaches is time stamped, and when the trace is finished the time
+ * between consecutive stages is added to the later stage's statistics.
+ * Trace records are kept in a fixed ring, so a trace must be finished before RING_SIZE newer traces begin.
+ */
+public class Tracer {
+
+    /**
+     * The stages of a key press.
+     */
+    public static final int PRESSED = 0;      // the key was pressed (event thread or AI)
+    public static final int ENQUEUED = 1;     // the press was queued for the player thread
+    public static final int CONSUMED = 2;     // the player thread took the press
+    public static final int TOKEN_PLACED = 3; // the token was placed (or removed) on the table
+    public static final int CLAIM_QUEUED = 4; // the press completed a claim that was handed to the dealer
+    public static final int VERDICT = 5;      // the dealer decided the claim
+    public static final int UI_UPDATED = 6;   // the claim's outcome was shown
+    public static final int STAGES = 7;
+
+    private static final String[] STAGE_NAMES = {
+            "pressed", "enqueued", "consumed", "token placed", "claim queued", "verdict", "ui updated"};
+
+    /**
+     * The id of a press that is not traced.
+     */
+    public static final int NONE = -1;
+
+    private static final int RING_SIZE = 1 << 16;
+    private static final int BUCKETS = 64;
+
+    private final boolean enabled;
+    private final String exportFile;
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    /**
+     * The stage time stamps of the traces in the ring (0 for stages not reached).
+     */
+    private final AtomicLongArray stamps;
+
+    /**
+     * Per stage statistics: count, total nanos, max nanos and a log2 histogram of the latencies.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(STAGES);
+    private final AtomicLongArray totals = new AtomicLongArray(STAGES);
+    private final AtomicLongArray maxima = new AtomicLongArray(STAGES);
+    private final AtomicLongArray histogram = new AtomicLongArray(STAGES * BUCKETS);
+
+    private Tracer(boolean enabled, String exportFile) {
+        this.enabled = enabled;
+        this.exportFile = exportFile;
+        this.stamps = new AtomicLongArray(enabled ? RING_SIZE * STAGES : 0);
+    }
+
+    /**
+     * Creates a tracer that traces nothing.
+     *
+     * @return - a disabled tracer.
+     */
+    public static Tracer disabled() {
+        return new Tracer(false, null);
+    }
+
+    /**
+     * Creates a tracer that exports the per stage latencies to a file (see export).
+     *
+     * @param exportFile - the file name (empty for a disabled tracer).
+     * @return - the tracer.
+     */
+    public static Tracer create(String exportFile) {
+        return exportFile == null || exportFile.isEmpty() ? disabled() : new Tracer(true, exportFile);
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts a new trace.
+     *
+     * @param pressedNanos - the time the key was pressed (System.nanoTime).
+     * @return - the trace id (NONE if tracing is disabled).
+     */
+    public int begin(long pressedNanos) {
+        if (!enabled) return NONE;
+        int id = nextId.getAndIncrement() & Integer.MAX_VALUE;
+        int base = (id & (RING_SIZE - 1)) * STAGES;
+        stamps.set(base + PRESSED, pressedNanos);
+        for (int stage = PRESSED + 1; stage < STAGES; stage++)
+            stamps.set(base + stage, 0);
+        return id;
+    }
+
+    /**
+     * Time stamps a stage of a trace.
+     *
+     * @param id    - the trace id.
+     * @param stage - the stage reached.
+     */
+    public void stage(int id, int stage) {
+        if (id == NONE) return;
+        stamps.set((id & (RING_SIZE - 1)) * STAGES + stage, System.nanoTime());
+    }
+
+    /**
+     * Ends a trace, adding its stage latencies to the statistics.
+     *
+     * @param id - the trace id.
+     */
+    public void finish(int id) {
+        if (id == NONE) return;
+        int base = (id & (RING_SIZE - 1)) * STAGES;
+        long previous = stamps.get(base + PRESSED);
+        for (int stage = PRESSED + 1; stage < STAGES; stage++) {
+            long stamp = stamps.get(base + stage);
+            if (stamp == 0) continue;
+            long latency = Math.max(0, stamp - previous);
+            previous = stamp;
+            counts.incrementAndGet(stage);
+            totals.addAndGet(stage, latency);
+            maxima.accumulateAndGet(stage, latency, Math::max);
+            histogram.incrementAndGet(stage * BUCKETS + Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(latency)));
+        }
+    }
+
+    /**
+     * @return - a table of the latency of each stage (in microseconds).
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder("stage,count,avg_us,p50_us,p99_us,max_us\n");
+        for (int stage = PRESSED + 1; stage < STAGES; stage++) {
+            long count = counts.get(stage);
+            sb.append(STAGE_NAMES[stage]).append(',').append(count).append(',')
+                    .append(count == 0 ? 0 : totals.get(stage) / count / 1000).append(',')
+                    .append(percentile(stage, count, 0.5) / 1000).append(',')
+                    .append(percentile(stage, count, 0.99) / 1000).append(',')
+                    .append(maxima.get(stage) / 1000).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return - an upper bound (the histogram bucket limit) of the latency percentile.
+     */
+    private long percentile(int stage, long count, double fraction) {
+        long rank = (long) Math.ceil(count * fraction), seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += histogram.get(stage * BUCKETS + bucket);
+            if (seen >= rank && count > 0) return bucket == 0 ? 0 : 1L << Math.min(bucket, 62);
+        }
+        return 0;
+    }
+
+    /**
+     * Writes the report to the export file.
+     */
+    public void export() throws IOException {
+        if (!enabled) return;
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(exportFile)))) {
+            writer.print(report());
+        }
+    }
+}
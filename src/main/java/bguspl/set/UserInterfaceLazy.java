@@ -0,0 +1,163 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A user interface that creates the actual user interface on a background thread, so that the game can start dealing
+ * while the window is still being built. Updates made before it is ready are kept and replayed on it in order.
+ */
+public class UserInterfaceLazy implements UserInterface {
+
+    private final Thread creator;
+
+    /**
+     * The actual user interface, set once it is created and the kept updates were replayed on it.
+     */
+    private volatile UserInterface ui;
+    private volatile boolean ready;
+
+    /**
+     * The updates made before the user interface is ready (guarded by this).
+     */
+    private final List<Consumer<UserInterface>> pending = new ArrayList<>();
+
+    /**
+     * @param factory - creates the actual user interface (may return null for no user interface).
+     */
+    public UserInterfaceLazy(Supplier<UserInterface> factory) {
+        creator = new Thread(() -> create(factory), "ui-init");
+        creator.setDaemon(true);
+        creator.start();
+    }
+
+    private void create(Supplier<UserInterface> factory) {
+        UserInterface created = null;
+        try {
+            created = factory.get();
+        } finally {
+            synchronized (this) {
+                ui = created;
+                if (created != null) for (Consumer<UserInterface> update : pending)
+                    update.accept(created);
+                pending.clear();
+                ready = true;
+            }
+        }
+    }
+
+    /**
+     * Keeps an update if the user interface is not ready, or applies it if it became ready meanwhile.
+     */
+    private void defer(Consumer<UserInterface> update) {
+        synchronized (this) {
+            if (!ready) {
+                pending.add(update);
+                return;
+            }
+        }
+        if (ui != null) update.accept(ui);
+    }
+
+    /**
+     * @return - true iff the actual user interface was created (or failed to be created).
+     */
+    public boolean ready() {
+        return ready;
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        if (ready) {
+            if (ui != null) ui.placeCard(card, slot);
+        } else defer(ui -> ui.placeCard(card, slot));
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        if (ready) {
+            if (ui != null) ui.removeCard(slot);
+        } else defer(ui -> ui.removeCard(slot));
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        if (ready) {
+            if (ui != null) ui.placeToken(player, slot);
+        } else defer(ui -> ui.placeToken(player, slot));
+    }
+
+    @Override
+    public void removeTokens() {
+        if (ready) {
+            if (ui != null) ui.removeTokens();
+        } else defer(UserInterface::removeTokens);
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        if (ready) {
+            if (ui != null) ui.removeTokens(slot);
+        } else defer(ui -> ui.removeTokens(slot));
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        if (ready) {
+            if (ui != null) ui.removeToken(player, slot);
+        } else defer(ui -> ui.removeToken(player, slot));
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        if (ready) {
+            if (ui != null) ui.setCountdown(millies, warn);
+        } else defer(ui -> ui.setCountdown(millies, warn));
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        if (ready) {
+            if (ui != null) ui.setElapsed(millies);
+        } else defer(ui -> ui.setElapsed(millies));
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        if (ready) {
+            if (ui != null) ui.setFreeze(player, millies);
+        } else defer(ui -> ui.setFreeze(player, millies));
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        if (ready) {
+            if (ui != null) ui.setScore(player, score);
+        } else defer(ui -> ui.setScore(player, score));
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        if (ready) {
+            if (ui != null) ui.announceWinner(players);
+        } else {
+            int[] winners = players.clone();
+            defer(ui -> ui.announceWinner(winners));
+        }
+    }
+
+    /**
+     * Waits for the user interface to be created, and then disposes it.
+     */
+    @Override
+    public void dispose() {
+        try {
+            creator.join();
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+        if (ui != null) ui.dispose();
+    }
+}
@@ -0,0 +1,91 @@
+package bguspl.set;
+
+/**
+ * A user interface that passes every update on to another user interface (if any) and to the remote clients.
+ */
+public class UserInterfaceRemote implements UserInterface {
+
+    private final UserInterface ui;
+    private final GameServer server;
+
+    /**
+     * @param ui     - the local user interface (may be null).
+     * @param server - the server of the remote clients.
+     */
+    public UserInterfaceRemote(UserInterface ui, GameServer server) {
+        this.ui = ui;
+        this.server = server;
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        if (ui != null) ui.placeCard(card, slot);
+        server.broadcast(GameServer.CARD_PLACED, card, slot);
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        if (ui != null) ui.removeCard(slot);
+        server.broadcast(GameServer.CARD_REMOVED, slot, 0);
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        if (ui != null) ui.placeToken(player, slot);
+        server.broadcast(GameServer.TOKEN_PLACED, player, slot);
+    }
+
+    @Override
+    public void removeTokens() {
+        if (ui != null) ui.removeTokens();
+        server.broadcast(GameServer.TOKENS_CLEARED, -1, 0);
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        if (ui != null) ui.removeTokens(slot);
+        server.broadcast(GameServer.TOKENS_CLEARED, slot, 0);
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        if (ui != null) ui.removeToken(player, slot);
+        server.broadcast(GameServer.TOKEN_REMOVED, player, slot);
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        if (ui != null) ui.setCountdown(millies, warn);
+        server.broadcast(GameServer.COUNTDOWN, (int) millies, warn ? 1 : 0);
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        if (ui != null) ui.setElapsed(millies);
+        server.broadcast(GameServer.COUNTDOWN, (int) millies, 0);
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        if (ui != null) ui.setFreeze(player, millies);
+        server.broadcast(GameServer.FREEZE, player, (int) millies);
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        if (ui != null) ui.setScore(player, score);
+        server.broadcast(GameServer.SCORE, player, score);
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        if (ui != null) ui.announceWinner(players);
+        for (int player : players)
+            server.broadcast(GameServer.WINNER, player, 0);
+    }
+
+    @Override
+    public void dispose() {
+        if (ui != null) ui.dispose();
+    }
+}
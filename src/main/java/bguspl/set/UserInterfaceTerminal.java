@@ -0,0 +1,283 @@
+package bguspl.set;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * A text user interface for ANSI terminals (e.g. a game server watched over SSH).
+ * The game threads only update the displayed state; a render thread draws it at most TerminalFrameRate times per
+ * second into a screen buffer, and writes to the terminal only the characters that differ from the previous frame.
+ */
+public class UserInterfaceTerminal implements UserInterface {
+
+    /**
+     * The size (in characters) of a table cell.
+     */
+    private static final int CELL_WIDTH = 14;
+    private static final int CELL_HEIGHT = 3;
+
+    /**
+     * The character colors (ANSI foreground color codes, 0 for the default color).
+     */
+    private static final byte DEFAULT = 0;
+    private static final byte RED = 31;
+    private static final byte GREEN = 32;
+    private static final byte YELLOW = 33;
+    private static final byte MAGENTA = 35;
+    private static final byte[] CARD_COLORS = {RED, GREEN, MAGENTA};
+
+    private static final String ESC = "\u001b[";
+
+    private final Config config;
+    private final Util util;
+    private final PrintStream out;
+
+    /**
+     * The displayed state (guarded by this).
+     */
+    private final int[] cards;
+    private final boolean[][] tokens;
+    private final int[] scores;
+    private final long[] freezes;
+    private long countdown;
+    private boolean warn;
+    private long elapsed = -1;
+    private int[] winners;
+    private boolean dirty = true;
+
+    /**
+     * The screen being drawn and the screen shown on the terminal (accessed only by the render thread).
+     */
+    private final int width;
+    private final int height;
+    private final int tableRows;
+    private final char[] nextChars;
+    private final byte[] nextColors;
+    private final char[] shownChars;
+    private final byte[] shownColors;
+
+    private final Thread renderer;
+    private volatile boolean terminate;
+
+    public UserInterfaceTerminal(Config config, Util util, PrintStream out) {
+        this.config = config;
+        this.util = util;
+        this.out = out;
+        cards = new int[config.maxTableSize];
+        Arrays.fill(cards, -1);
+        tokens = new boolean[config.maxTableSize][config.players];
+        scores = new int[config.players];
+        freezes = new long[config.players];
+
+        width = Math.max(config.columns * CELL_WIDTH, 40);
+        tableRows = (config.maxTableSize + config.columns - 1) / config.columns; // the grid and the extra slots
+        height = 2 + tableRows * CELL_HEIGHT + 1 + config.players + 2;
+        nextChars = new char[width * height];
+        nextColors = new byte[width * height];
+        shownChars = new char[width * height];
+        shownColors = new byte[width * height];
+        Arrays.fill(shownChars, ' ');
+
+        out.print(ESC + "2J" + ESC + "?25l"); // clear the screen and hide the cursor
+        out.flush();
+        renderer = new Thread(this::render, "terminal-ui");
+        renderer.setDaemon(true);
+        renderer.start();
+    }
+
+    /**
+     * The render thread: draws a frame whenever the state changed, at most TerminalFrameRate frames per second.
+     */
+    private void render() {
+        long frameMillis = 1000 / Math.max(1, config.terminalFrameRate);
+        while (!terminate) {
+            drawFrame();
+            try {
+                Thread.sleep(frameMillis);
+            } catch (InterruptedException ignored) {
+            }
+        }
+    }
+
+    private void drawFrame() {
+        synchronized (this) {
+            if (!dirty) return;
+            dirty = false;
+            draw();
+        }
+        flush();
+    }
+
+    /**
+     * Draws the state into the next screen.
+     */
+    private void draw() {
+        Arrays.fill(nextChars, ' ');
+        Arrays.fill(nextColors, DEFAULT);
+
+        if (elapsed >= 0) put(0, 0, "Elapsed: " + elapsed / 1000 + "s", DEFAULT);
+        else if (warn) put(0, 0, String.format("Countdown: %.1f", countdown / 1000.0), RED);
+        else put(0, 0, "Countdown: " + countdown / 1000, DEFAULT);
+
+        for (int slot = 0; slot < cards.length; slot++) {
+            int row = 2 + slot / config.columns * CELL_HEIGHT, column = slot % config.columns * CELL_WIDTH;
+            if (cards[slot] < 0) {
+                if (slot < config.tableSize) put(row, column, "[          ]", DEFAULT); // extra slots just vanish
+                continue;
+            }
+            int[] features = util.cardToFeatures(cards[slot]);
+            StringBuilder card = new StringBuilder("[");
+            for (int feature : features)
+                card.append(' ').append(feature);
+            put(row, column, card.append(" ]").toString(), CARD_COLORS[features[0] % CARD_COLORS.length]);
+            StringBuilder owners = new StringBuilder();
+            for (int player = 0; player < tokens[slot].length; player++)
+                if (tokens[slot][player]) owners.append(player + 1).append(' ');
+            put(row + 1, column + 1, owners.toString(), YELLOW);
+        }
+
+        int row = 3 + tableRows * CELL_HEIGHT;
+        for (int player = 0; player < scores.length; player++, row++) {
+            String line = String.format("%-16.16s %4d", config.playerNames[player], scores[player]);
+            if (freezes[player] > 0) put(row, 0, line + "  frozen " + freezes[player] / 1000 + "s", RED);
+            else put(row, 0, line, DEFAULT);
+        }
+
+        if (winners != null) {
+            StringBuilder line = new StringBuilder(winners.length == 1 ? "THE WINNER IS:" : "IT IS A DRAW:");
+            for (int winner : winners)
+                line.append(' ').append(config.playerNames[winner]);
+            put(row + 1, 0, line.toString(), GREEN);
+        }
+    }
+
+    private void put(int row, int column, String text, byte color) {
+        int length = Math.min(text.length(), width - column);
+        for (int i = 0; i < length; i++) {
+            nextChars[row * width + column + i] = text.charAt(i);
+            nextColors[row * width + column + i] = color;
+        }
+    }
+
+    /**
+     * Writes the characters of the next screen that differ from the shown screen to the terminal.
+     */
+    private void flush() {
+        StringBuilder sb = new StringBuilder();
+        byte color = -1;
+        for (int row = 0; row < height; row++) {
+            int column = 0;
+            while (column < width) {
+                int i = row * width + column;
+                if (nextChars[i] == shownChars[i] && nextColors[i] == shownColors[i]) {
+                    ++column;
+                    continue;
+                }
+                sb.append(ESC).append(row + 1).append(';').append(column + 1).append('H');
+                for (; column < width; ++column, ++i) {
+                    if (nextChars[i] == shownChars[i] && nextColors[i] == shownColors[i]) break;
+                    if (nextColors[i] != color) {
+                        color = nextColors[i];
+                        sb.append(ESC).append(color).append('m');
+                    }
+                    sb.append(nextChars[i]);
+                    shownChars[i] = nextChars[i];
+                    shownColors[i] = nextColors[i];
+                }
+            }
+        }
+        if (sb.length() == 0) return;
+        sb.append(ESC).append("0m");
+        out.print(sb);
+        out.flush();
+    }
+
+    private synchronized void changed() {
+        dirty = true;
+    }
+
+    @Override
+    public synchronized void placeCard(int card, int slot) {
+        cards[slot] = card;
+        changed();
+    }
+
+    @Override
+    public synchronized void removeCard(int slot) {
+        cards[slot] = -1;
+        changed();
+    }
+
+    @Override
+    public synchronized void placeToken(int player, int slot) {
+        tokens[slot][player] = true;
+        changed();
+    }
+
+    @Override
+    public synchronized void removeTokens() {
+        for (boolean[] owners : tokens)
+            Arrays.fill(owners, false);
+        changed();
+    }
+
+    @Override
+    public synchronized void removeTokens(int slot) {
+        Arrays.fill(tokens[slot], false);
+        changed();
+    }
+
+    @Override
+    public synchronized void removeToken(int player, int slot) {
+        tokens[slot][player] = false;
+        changed();
+    }
+
+    @Override
+    public synchronized void setCountdown(long millies, boolean warn) {
+        if (countdown == millies && this.warn == warn) return;
+        countdown = millies;
+        this.warn = warn;
+        changed();
+    }
+
+    @Override
+    public synchronized void setElapsed(long millies) {
+        elapsed = millies;
+        changed();
+    }
+
+    @Override
+    public synchronized void setFreeze(int player, long millies) {
+        freezes[player] = millies;
+        changed();
+    }
+
+    @Override
+    public synchronized void setScore(int player, int score) {
+        scores[player] = score;
+        changed();
+    }
+
+    @Override
+    public synchronized void announceWinner(int[] players) {
+        winners = players.clone();
+        changed();
+    }
+
+    /**
+     * Stops the render thread, draws the last frame and restores the terminal.
+     */
+    @Override
+    public void dispose() {
+        terminate = true;
+        renderer.interrupt();
+        try {
+            renderer.join();
+        } catch (InterruptedException ignored) {
+        }
+        drawFrame();
+        out.print(ESC + (height + 1) + ";1H" + ESC + "?25h"); // move below the screen and show the cursor
+        out.flush();
+    }
+}
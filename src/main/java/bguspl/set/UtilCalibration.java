@@ -0,0 +1,222 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.ServiceLoader;
+import java.util.logging.Logger;
+
+/**
+ * Picks the Util engine of a game: the engine named by the configuration, or else the fastest of the discovered
+ * engines that support the configured deck. The engines are timed on a short workload that mimics the dealer and the
+ * players (finding all the sets of random tables, finding a set in the whole deck and checking claims), after their
+ * results were checked against the reference engine's.
+ */
+public class UtilCalibration {
+
+    /**
+     * The number of random tables in the workload.
+     */
+    private static final int TABLES = 8;
+
+    /**
+     * The timings of an engine.
+     */
+    public static class Timing {
+
+        public final UtilEngine engine;
+        public final long rounds;
+
+        /**
+         * The time of the engine's fastest round (the earlier rounds are slower, until the engine is compiled).
+         */
+        public final long bestRoundNanos;
+
+        Timing(UtilEngine engine, long rounds, long bestRoundNanos) {
+            this.engine = engine;
+            this.rounds = rounds;
+            this.bestRoundNanos = bestRoundNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("util engine %s: %.1f us per round (best of %d rounds)", engine.name(),
+                    bestRoundNanos / 1000.0, rounds);
+        }
+    }
+
+    private final Config config;
+    private final List<List<Integer>> tables = new ArrayList<>();
+    private final List<List<Integer>> decks = new ArrayList<>();
+    private final List<int[]> claims = new ArrayList<>();
+
+    /**
+     * The results of the reference engine on the workload.
+     */
+    private final List<List<int[]>> expectedSets = new ArrayList<>();
+    private final List<List<int[]>> expectedDeckSets = new ArrayList<>();
+    private final boolean[] expectedVerdicts;
+
+    /**
+     * Result of the last round (so the timed calls are not optimized away).
+     */
+    private long sink;
+
+    private UtilCalibration(Config config) {
+        this.config = config;
+        Random random = new Random(config.seed);
+        List<Integer> deck = new ArrayList<>(config.deckSize);
+        for (int card = 0; card < config.deckSize; ++card)
+            deck.add(card);
+        int tableSize = Math.min(config.tableSize, config.deckSize);
+        for (int i = 0; i < TABLES; ++i) {
+            Collections.shuffle(deck, random);
+            tables.add(new ArrayList<>(deck.subList(0, tableSize)));
+            decks.add(new ArrayList<>(deck));
+            int[] claim = new int[Math.min(config.featureSize, tableSize)];
+            for (int j = 0; j < claim.length; ++j)
+                claim[j] = deck.get(j);
+            claims.add(claim);
+        }
+
+        Util reference = new UtilImpl(config);
+        expectedVerdicts = new boolean[TABLES];
+        for (int i = 0; i < TABLES; ++i) {
+            expectedSets.add(reference.findSets(tables.get(i), Integer.MAX_VALUE));
+            expectedDeckSets.add(reference.findSets(decks.get(i), 1));
+            expectedVerdicts[i] = reference.testSet(claims.get(i));
+            // a claim of a found set, so that both verdicts are checked
+            if (i % 2 == 1 && !expectedSets.get(i).isEmpty()) {
+                claims.set(i, expectedSets.get(i).get(0));
+                expectedVerdicts[i] = true;
+            }
+        }
+    }
+
+    /**
+     * @param config - the game settings.
+     * @return - the engines on the class path that support the configured deck.
+     */
+    public static List<UtilEngine> engines(Config config) {
+        List<UtilEngine> engines = new ArrayList<>();
+        for (UtilEngine engine : ServiceLoader.load(UtilEngine.class))
+            if (engine.supports(config)) engines.add(engine);
+        return engines;
+    }
+
+    /**
+     * Picks the engine for the configured deck, and logs the choice (and the timings, if it was calibrated).
+     *
+     * @param logger - the logger.
+     * @param config - the game settings.
+     * @return - the engine.
+     */
+    public static UtilEngine select(Logger logger, Config config) {
+        List<UtilEngine> engines = engines(config);
+        if (!config.utilEngine.isEmpty()) {
+            for (UtilEngine engine : engines)
+                if (engine.name().equalsIgnoreCase(config.utilEngine)) {
+                    logger.info("util engine " + engine.name() + " selected by the configuration");
+                    return engine;
+                }
+            logger.severe("util engine " + config.utilEngine + " is unknown or does not support the deck, calibrating");
+        }
+        if (engines.isEmpty() || config.utilCalibrationMillis <= 0) {
+            logger.info("util engine reference selected without calibration");
+            return new UtilImpl.Engine();
+        }
+
+        long start = System.nanoTime();
+        List<Timing> timings = calibrate(logger, config, engines);
+        Timing fastest = timings.get(0);
+        for (Timing timing : timings) {
+            logger.info(timing.toString());
+            if (timing.bestRoundNanos < fastest.bestRoundNanos) fastest = timing;
+        }
+        logger.info("util engine " + fastest.engine.name() + " selected by calibration in "
+                + (System.nanoTime() - start) / 1000000 + "ms");
+        return fastest.engine;
+    }
+
+    /**
+     * Times each engine on the workload for the configured calibration time (at least one round).
+     *
+     * @param logger  - the logger.
+     * @param config  - the game settings.
+     * @param engines - the engines to time.
+     * @return - the timings of the engines whose results match the reference engine's, or of the reference engine
+     * alone if none does.
+     */
+    public static List<Timing> calibrate(Logger logger, Config config, List<UtilEngine> engines) {
+        UtilCalibration calibration = new UtilCalibration(config);
+        List<Util> utils = new ArrayList<>();
+        List<UtilEngine> verified = new ArrayList<>();
+        for (UtilEngine engine : engines) {
+            Util util = engine.create(config);
+            if (util.getClass() == UtilImpl.class || calibration.verify(util)) {
+                utils.add(util);
+                verified.add(engine);
+            } else logger.severe("util engine " + engine.name() + " disagrees with the reference engine, skipped");
+        }
+        if (verified.isEmpty()) {
+            verified.add(new UtilImpl.Engine());
+            utils.add(new UtilImpl(config));
+        }
+
+        List<Timing> timings = new ArrayList<>();
+        for (int i = 0; i < utils.size(); ++i)
+            timings.add(calibration.time(verified.get(i), utils.get(i), config.utilCalibrationMillis));
+        return timings;
+    }
+
+    /**
+     * @return - true iff the util's results on the workload match the reference engine's.
+     */
+    private boolean verify(Util util) {
+        try {
+            for (int i = 0; i < TABLES; ++i)
+                if (!sameSets(expectedSets.get(i), util.findSets(tables.get(i), Integer.MAX_VALUE))
+                        || !sameSets(expectedDeckSets.get(i), util.findSets(decks.get(i), 1))
+                        || util.testSet(claims.get(i)) != expectedVerdicts[i])
+                    return false;
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static boolean sameSets(List<int[]> expected, List<int[]> actual) {
+        if (expected.size() != actual.size()) return false;
+        for (int i = 0; i < expected.size(); ++i)
+            if (!Arrays.equals(expected.get(i), actual.get(i))) return false;
+        return true;
+    }
+
+    /**
+     * Runs rounds of the workload for (at least) the given time.
+     *
+     * @return - the engine's timing.
+     */
+    private Timing time(UtilEngine engine, Util util, long millis) {
+        long deadline = System.nanoTime() + millis * 1000000;
+        long rounds = 0;
+        long best = Long.MAX_VALUE;
+        long now = System.nanoTime();
+        do {
+            long start = now;
+            long found = 0;
+            for (int i = 0; i < TABLES; ++i) {
+                found += util.findSets(tables.get(i), Integer.MAX_VALUE).size();
+                found += util.findSets(decks.get(i), 1).size();
+                if (util.testSet(claims.get(i))) ++found;
+            }
+            sink = found;
+            ++rounds;
+            now = System.nanoTime();
+            best = Math.min(best, now - start);
+        } while (now < deadline);
+        return new Timing(engine, rounds, best);
+    }
+}
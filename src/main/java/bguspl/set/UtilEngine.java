@@ -0,0 +1,26 @@
+package bguspl.set;
+
+/**
+ * A provider of a Util implementation, discovered with a ServiceLoader (listed in
+ * META-INF/services/bguspl.set.UtilEngine). At startup, UtilCalibration picks the fastest engine that supports the
+ * game's deck, unless the configuration names one.
+ */
+public interface UtilEngine {
+
+    /**
+     * @return - the engine's name (as used by the UtilEngine configuration property).
+     */
+    String name();
+
+    /**
+     * @param config - the game settings.
+     * @return - true iff the engine can handle the configured deck.
+     */
+    boolean supports(Config config);
+
+    /**
+     * @param config - the game settings.
+     * @return - a new Util for the configured deck.
+     */
+    Util create(Config config);
+}
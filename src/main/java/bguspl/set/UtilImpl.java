@@ -7,14 +7,26 @@ import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.IntStream;
 
 /**
- * The implementation of the UserInterface interface.
+ * The implementation of the Util interface (the reference engine, see UtilEngine).
  */
 public class UtilImpl implements Util {
 
     private final Config config;
 
+    /**
+     * The divisor that extracts each feature of a card id: feature i is card / divisors[i] % featureSize.
+     */
+    private final int[] divisors;
+
     public UtilImpl(Config config) {
         this.config = config;
+        divisors = new int[config.featureCount];
+        for (int i = config.featureCount - 1, divisor = 1; i >= 0; --i, divisor *= config.featureSize)
+            divisors[i] = divisor;
+    }
+
+    private int feature(int card, int i) {
+        return card / divisors[i] % config.featureSize;
     }
 
     private void cardToFeatures(int card, int[] features) {
@@ -40,21 +52,21 @@ public class UtilImpl implements Util {
 
     @Override
     public boolean testSet(int[] cards) {
-        int[][] features = cardsToFeatures(Arrays.copyOf(cards, cards.length));
+        // the features are extracted in place, so that checking a claim allocates nothing
         for (int i = 0; i < config.featureCount; ++i) {
             boolean sameSame = true, butDifferent = true;
 
             // check if this features is sameSame in all cards
-            for (int j = 1; j < features.length; ++j)
-                if (features[0][i] != features[j][i]) {
+            for (int j = 1; j < cards.length; ++j)
+                if (feature(cards[0], i) != feature(cards[j], i)) {
                     sameSame = false;
                     break;
                 }
 
             // check if this feature is butDifferent in all cards
-            for (int j = 1; j < features.length; ++j)
-                for (int k = j; k < features.length; ++k)
-                    if (features[j - 1][i] == features[k][i]) {
+            for (int j = 1; j < cards.length; ++j)
+                for (int k = j; k < cards.length; ++k)
+                    if (feature(cards[j - 1], i) == feature(cards[k], i)) {
                         butDifferent = false;
                         break;
                     }
@@ -96,4 +108,25 @@ public class UtilImpl implements Util {
         for (int i = 0; i < cycles; ++i)
             Thread.yield();
     }
+
+    /**
+     * The reference engine, which handles any deck.
+     */
+    public static class Engine implements UtilEngine {
+
+        @Override
+        public String name() {
+            return "reference";
+        }
+
+        @Override
+        public boolean supports(Config config) {
+            return true;
+        }
+
+        @Override
+        public Util create(Config config) {
+            return new UtilImpl(config);
+        }
+    }
 }
@@ -0,0 +1,115 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A Util that packs each card in a long with one bit per feature value, so that the features of several cards are
+ * merged with a bitwise or: a feature is the same in all the cards iff its bits hold a single value, and different in
+ * all of them iff they hold as many values as cards. findSets prunes each combination as soon as a feature is neither.
+ * Supports decks of up to 64 feature values (e.g. 4 features of 3 values).
+ */
+public class UtilPacked extends UtilImpl {
+
+    private final int featureSize;
+
+    /**
+     * The packed features of each card.
+     */
+    private final long[] masks;
+
+    /**
+     * The bits of the values of each feature.
+     */
+    private final long[] groups;
+
+    public UtilPacked(Config config) {
+        super(config);
+        featureSize = config.featureSize;
+        groups = new long[config.featureCount];
+        for (int i = 0; i < groups.length; ++i)
+            groups[i] = (-1L >>> (Long.SIZE - featureSize)) << (i * featureSize);
+        masks = new long[config.deckSize];
+        for (int card = 0; card < masks.length; ++card) {
+            int[] features = cardToFeatures(card);
+            for (int i = 0; i < features.length; ++i)
+                masks[card] |= 1L << (i * featureSize + features[i]);
+        }
+    }
+
+    /**
+     * @param mask  - the packed features of some cards.
+     * @param cards - the number of cards.
+     * @return - true iff every feature is either the same in all the cards or different in all of them.
+     */
+    private boolean legal(long mask, int cards) {
+        for (long group : groups) {
+            int values = Long.bitCount(mask & group);
+            if ((values == 1) == (values == cards)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean testSet(int[] cards) {
+        long mask = 0;
+        for (int card : cards)
+            mask |= masks[card];
+        return legal(mask, cards.length);
+    }
+
+    @Override
+    public List<int[]> findSets(List<Integer> deck, int count) {
+        int[] cards = new int[deck.size()];
+        for (int i = 0; i < cards.length; ++i)
+            cards[i] = deck.get(i);
+        List<int[]> sets = new ArrayList<>();
+        search(cards, 0, new int[featureSize], 0, 0, sets, count);
+        return sets;
+    }
+
+    /**
+     * Extends a combination of cards (in the deck's order, like UtilImpl does) with each of the following cards.
+     *
+     * @return - true iff count sets were found.
+     */
+    private boolean search(int[] cards, int from, int[] chosen, int depth, long mask, List<int[]> sets, int count) {
+        for (int i = from; i <= cards.length - featureSize + depth; ++i) {
+            long extended = mask | masks[cards[i]];
+            // a single card is both the same and different in every feature
+            if (depth > 0 && !legal(extended, depth + 1)) continue;
+            chosen[depth] = cards[i];
+            if (depth + 1 < featureSize) {
+                if (search(cards, i + 1, chosen, depth + 1, extended, sets, count)) return true;
+                continue;
+            }
+            int[] set = chosen.clone();
+            Arrays.sort(set);
+            sets.add(set);
+            if (sets.size() >= count) return true;
+        }
+        return false;
+    }
+
+    /**
+     * The packed engine.
+     */
+    public static class Engine implements UtilEngine {
+
+        @Override
+        public String name() {
+            return "packed";
+        }
+
+        @Override
+        public boolean supports(Config config) {
+            return config.featureSize >= 2 && config.featureCount * config.featureSize <= Long.SIZE;
+        }
+
+        @Override
+        public Util create(Config config) {
+            return new UtilPacked(config);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A Util for features of 3 values, where any two cards complete exactly one set (each feature of the third card is
+ * (-a - b) mod 3). The third card of every pair is looked up in a precomputed table, so that testSet is a single
+ * lookup and findSets only visits the pairs of the deck instead of all its triples.
+ * Supports decks of features of 3 values and up to 729 cards.
+ */
+public class UtilTable extends UtilImpl {
+
+    private static final int MAX_DECK_SIZE = 729;
+
+    private final int deckSize;
+
+    /**
+     * The card that completes each pair: thirds[a * deckSize + b].
+     */
+    private final short[] thirds;
+
+    public UtilTable(Config config) {
+        super(config);
+        deckSize = config.deckSize;
+        int[][] features = new int[deckSize][];
+        Arrays.setAll(features, this::cardToFeatures);
+        thirds = new short[deckSize * deckSize];
+        for (int a = 0; a < deckSize; ++a)
+            for (int b = 0; b < deckSize; ++b) {
+                int third = 0;
+                for (int i = 0; i < config.featureCount; ++i)
+                    third = third * 3 + (6 - features[a][i] - features[b][i]) % 3;
+                thirds[a * deckSize + b] = (short) third;
+            }
+    }
+
+    @Override
+    public boolean testSet(int[] cards) {
+        if (cards.length != 3) return super.testSet(cards);
+        return thirds[cards[0] * deckSize + cards[1]] == cards[2];
+    }
+
+    @Override
+    public List<int[]> findSets(List<Integer> deck, int count) {
+        int n = deck.size();
+        int[] cards = new int[n];
+        int[] positions = new int[deckSize];
+        Arrays.fill(positions, -1);
+        for (int i = 0; i < n; ++i) {
+            cards[i] = deck.get(i);
+            positions[cards[i]] = i;
+        }
+
+        // the pairs are visited in the deck's order, so the sets are found in the same order as UtilImpl finds them
+        List<int[]> sets = new ArrayList<>();
+        for (int i = 0; i < n - 2; ++i)
+            for (int j = i + 1; j < n - 1; ++j) {
+                int k = positions[thirds[cards[i] * deckSize + cards[j]]];
+                if (k <= j) continue;
+                int[] set = {cards[i], cards[j], cards[k]};
+                Arrays.sort(set);
+                sets.add(set);
+                if (sets.size() >= count) return sets;
+            }
+        return sets;
+    }
+
+    /**
+     * The table driven engine.
+     */
+    public static class Engine implements UtilEngine {
+
+        @Override
+        public String name() {
+            return "table";
+        }
+
+        @Override
+        public boolean supports(Config config) {
+            return config.featureSize == 3 && config.deckSize <= MAX_DECK_SIZE;
+        }
+
+        @Override
+        public Util create(Config config) {
+            return new UtilTable(config);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The implementation of the Clock interface using virtual time: the time stands still while any participant thread
+ * is working, and jumps straight to the nearest deadline once all of them are idle (sleeping or waiting).
+ * This lets whole games with long timeouts and freezes run as fast as the threads can work.
+ * A thread waiting on a monitor counts as working again as soon as it is woken through wake (even before it reenters
+ * the monitor), so the time cannot jump past a deadline while a notified thread has work pending.
+ */
+public class VirtualClock implements Clock {
+
+    /**
+     * The real time (in milliseconds) between checks of a timed monitor wait, so that it notices the time advancing.
+     */
+    private static final long WAIT_SLICE_MILLIS = 1;
+
+    /**
+     * The clock state of a thread (kept for participants, so that waiting allocates nothing).
+     */
+    private static class Waiter {
+
+        final Thread thread;
+        boolean participant;
+        boolean idle;
+
+        /**
+         * The virtual time the thread waits for while idle (Long.MAX_VALUE if it waits to be notified).
+         */
+        long deadline;
+
+        /**
+         * The monitor the thread waits on while idle (null if it sleeps).
+         */
+        Object monitor;
+
+        Waiter(Thread thread) {
+            this.thread = thread;
+        }
+    }
+
+    /**
+     * The current virtual time.
+     */
+    private long now;
+
+    /**
+     * The participants (threads that must all be idle for the time to advance) and the idle threads.
+     */
+    private final Map<Thread, Waiter> waiters = new HashMap<>();
+    private final List<Waiter> waiterList = new ArrayList<>();
+
+    private int participants;
+    private int idleThreads;
+    private int idleParticipants;
+
+    @Override
+    public synchronized long millis() {
+        return now;
+    }
+
+    @Override
+    public synchronized void sleep(long millis) throws InterruptedException {
+        Thread thread = Thread.currentThread();
+        long deadline = now + Math.max(millis, 0);
+        enterIdle(thread, deadline, null);
+        try {
+            while (now < deadline) wait();
+        } finally {
+            exitIdle(thread);
+        }
+    }
+
+    @Override
+    public void waitOn(Object monitor) throws InterruptedException {
+        Thread thread = Thread.currentThread();
+        synchronized (this) {
+            enterIdle(thread, Long.MAX_VALUE, monitor);
+        }
+        try {
+            monitor.wait();
+        } finally {
+            synchronized (this) {
+                exitIdle(thread);
+            }
+        }
+    }
+
+    @Override
+    public void waitOn(Object monitor, long millis) throws InterruptedException {
+        Thread thread = Thread.currentThread();
+        synchronized (this) {
+            if (millis <= 0) return;
+            enterIdle(thread, now + millis, monitor);
+        }
+        try {
+            monitor.wait(WAIT_SLICE_MILLIS);
+        } finally {
+            synchronized (this) {
+                exitIdle(thread);
+            }
+        }
+    }
+
+    @Override
+    public void wake(Object monitor) {
+        synchronized (this) {
+            for (int i = 0; i < waiterList.size(); i++) {
+                Waiter waiter = waiterList.get(i);
+                if (waiter.idle && waiter.monitor == monitor) release(waiter);
+            }
+        }
+        monitor.notifyAll();
+    }
+
+    @Override
+    public synchronized void addParticipant(Thread thread) {
+        Waiter waiter = waiter(thread);
+        if (waiter.participant) return;
+        waiter.participant = true;
+        ++participants;
+        if (waiter.idle) ++idleParticipants;
+    }
+
+    @Override
+    public synchronized void removeParticipant(Thread thread) {
+        Waiter waiter = waiters.get(thread);
+        if (waiter != null && waiter.participant) {
+            waiter.participant = false;
+            --participants;
+            if (waiter.idle) --idleParticipants;
+            else forget(waiter);
+        }
+        advanceIfIdle();
+    }
+
+    private Waiter waiter(Thread thread) {
+        Waiter waiter = waiters.get(thread);
+        if (waiter == null) {
+            waiter = new Waiter(thread);
+            waiters.put(thread, waiter);
+            waiterList.add(waiter);
+        }
+        return waiter;
+    }
+
+    private void forget(Waiter waiter) {
+        waiters.remove(waiter.thread);
+        waiterList.remove(waiter);
+    }
+
+    private void enterIdle(Thread thread, long deadline, Object monitor) {
+        Waiter waiter = waiter(thread);
+        waiter.idle = true;
+        waiter.deadline = deadline;
+        waiter.monitor = monitor;
+        ++idleThreads;
+        if (waiter.participant) ++idleParticipants;
+        advanceIfIdle();
+    }
+
+    private void exitIdle(Thread thread) {
+        Waiter waiter = waiters.get(thread);
+        if (waiter == null) return;
+        if (waiter.idle) release(waiter);
+        if (!waiter.participant) forget(waiter);
+    }
+
+    private void release(Waiter waiter) {
+        waiter.idle = false;
+        waiter.monitor = null;
+        --idleThreads;
+        if (waiter.participant) --idleParticipants;
+    }
+
+    /**
+     * If all participants are idle, moves the time to the nearest deadline and releases the threads waiting for it.
+     * Released threads count as working from this moment, so the time cannot run ahead of them.
+     */
+    private void advanceIfIdle() {
+        if (idleParticipants < participants || idleThreads == 0) return;
+        long next = Long.MAX_VALUE;
+        for (int i = 0; i < waiterList.size(); i++) {
+            Waiter waiter = waiterList.get(i);
+            if (waiter.idle) next = Math.min(next, waiter.deadline);
+        }
+        if (next == Long.MAX_VALUE) return; // everyone waits to be notified
+        now = Math.max(now, next);
+        for (int i = 0; i < waiterList.size(); i++) {
+            Waiter waiter = waiterList.get(i);
+            if (waiter.idle && waiter.deadline <= now) release(waiter);
+        }
+        notifyAll();
+    }
+}
@@ -0,0 +1,53 @@
+package bguspl.set.ex;
+
+import bguspl.set.Tracer;
+
+/**
+ * A player's claim that the cards under its tokens form a legal set.
+ * A player reuses its claim object for its next claim once the previous one was handled (see renew).
+ */
+public class Claim {
+
+    /**
+     * The id of the claiming player.
+     */
+    public final int player;
+
+    /**
+     * The claimed cards (a snapshot of the player's tokens).
+     */
+    public final int[] cards;
+
+    /**
+     * The time the claim was made (System.nanoTime).
+     */
+    public long time;
+
+    /**
+     * The trace id of the key press that completed the claim (Tracer.NONE if not traced).
+     */
+    public int trace;
+
+    public Claim(int player, int[] cards, long time) {
+        this(player, cards, time, Tracer.NONE);
+    }
+
+    public Claim(int player, int[] cards, long time, int trace) {
+        this.player = player;
+        this.cards = cards;
+        this.time = time;
+        this.trace = trace;
+    }
+
+    /**
+     * Makes this the player's next claim, after its cards were refilled (only while no claim of the player is
+     * pending, so the dealer does not read it meanwhile).
+     *
+     * @param time  - the time the claim was made (System.nanoTime).
+     * @param trace - the trace id of the key press that completed the claim.
+     */
+    void renew(long time, int trace) {
+        this.time = time;
+        this.trace = trace;
+    }
+}
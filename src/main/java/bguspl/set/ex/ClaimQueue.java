@@ -0,0 +1,127 @@
+package bguspl.set.ex;
+
+import bguspl.set.Clock;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * The channel through which the players (many producers) hand their claims to the dealer (a single consumer).
+ * Each player may have at most one pending claim, which is checked in O(1) by a per-player flag, so the claims fit
+ * in a ring of one place per player and queuing them allocates nothing.
+ *
+ * @inv isPending(p) for every player p with a claim in the queue
+ */
+public class ClaimQueue {
+
+    /**
+     * The game clock, which keeps the time of the waits and is told of the wake ups.
+     */
+    private final Clock clock;
+
+    /**
+     * The queued claims, oldest first from head (guarded by this).
+     */
+    private Claim[] claims;
+    private int head;
+    private int size;
+
+    /**
+     * 1 for the players that have a claim waiting for a verdict.
+     */
+    private final AtomicIntegerArray pending;
+
+    /**
+     * @param clock   - the game clock.
+     * @param players - the number of players in the game.
+     */
+    public ClaimQueue(Clock clock, int players) {
+        this.clock = clock;
+        pending = new AtomicIntegerArray(players);
+        claims = new Claim[Math.max(1, players)];
+    }
+
+    /**
+     * Queues a claim, unless the player already has a pending claim.
+     *
+     * @param claim - the claim.
+     * @return - true iff the claim was queued.
+     */
+    public boolean submit(Claim claim) {
+        // the flag is set with the claim queued, so that voidAll never clears the flag of a claim it left queued
+        synchronized (this) {
+            if (!pending.compareAndSet(claim.player, 0, 1)) return false;
+            if (size == claims.length) grow(); // only if a flag was cleared while its claim was still queued
+            claims[(head + size++) % claims.length] = claim;
+            clock.wake(this);
+        }
+        return true;
+    }
+
+    private void grow() {
+        Claim[] grown = new Claim[claims.length * 2];
+        for (int i = 0; i < size; i++)
+            grown[i] = claims[(head + i) % claims.length];
+        claims = grown;
+        head = 0;
+    }
+
+    /**
+     * Retrieves the next claim, waiting for one up to the specified time (dealer only).
+     *
+     * @param millis - the maximum time to wait.
+     * @return - the next claim, or null if none arrived in time.
+     */
+    public synchronized Claim poll(long millis) throws InterruptedException {
+        long deadline = clock.millis() + millis;
+        while (size == 0) {
+            long left = deadline - clock.millis();
+            if (left <= 0) return null;
+            clock.waitOn(this, left);
+        }
+        return poll();
+    }
+
+    /**
+     * Retrieves the next claim if there is one, without waiting (dealer only).
+     *
+     * @return - the next claim, or null if the queue is empty.
+     */
+    public synchronized Claim poll() {
+        if (size == 0) return null;
+        Claim claim = claims[head];
+        claims[head] = null;
+        head = (head + 1) % claims.length;
+        --size;
+        return claim;
+    }
+
+    /**
+     * Marks a player's claim as handled, allowing it to claim again.
+     *
+     * @param player - the player id.
+     */
+    public void done(int player) {
+        pending.set(player, 0);
+    }
+
+    /**
+     * Voids all the queued claims and marks every player's claim as handled, at once (dealer only, e.g. at the end of
+     * a turn, when the claims made on the turn's table are void).
+     */
+    public synchronized void voidAll() {
+        for (; size > 0; --size) {
+            claims[head] = null;
+            head = (head + 1) % claims.length;
+        }
+        for (int player = 0; player < pending.length(); player++)
+            pending.set(player, 0);
+    }
+
+    /**
+     * @param player - the player id.
+     * @return - true iff the player has a claim waiting for a verdict.
+     */
+    public boolean isPending(int player) {
+        return pending.get(player) == 1;
+    }
+}
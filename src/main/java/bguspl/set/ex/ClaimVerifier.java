@@ -0,0 +1,87 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the set checks of a batch of claims, on worker threads if configured (otherwise on the calling thread).
+ * A verdict depends only on the claimed cards, so claims can be verified in any order and in parallel; deciding
+ * which verified claims still hold is left to the dealer.
+ */
+public class ClaimVerifier {
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    /**
+     * The worker threads (null if verifying on the calling thread).
+     */
+    private final ExecutorService workers;
+
+    public ClaimVerifier(Env env) {
+        this.env = env;
+        int threads = env.config.verifierThreads;
+        if (threads > 0) {
+            AtomicInteger count = new AtomicInteger();
+            workers = Executors.newFixedThreadPool(threads, task -> {
+                Thread thread = new Thread(task, "verifier-" + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else workers = null;
+    }
+
+    /**
+     * Checks whether each claim is a legal set.
+     *
+     * @param claims - the claims to verify.
+     * @return - the verdicts (respectively).
+     */
+    public boolean[] verify(List<Claim> claims) throws InterruptedException {
+        boolean[] verdicts = new boolean[claims.size()];
+        verify(claims, verdicts);
+        return verdicts;
+    }
+
+    /**
+     * Checks whether each claim is a legal set. Allocates nothing when checking on the calling thread.
+     *
+     * @param claims   - the claims to verify.
+     * @param verdicts - the array to fill with the verdicts (respectively), at least as long as claims.
+     */
+    public void verify(List<Claim> claims, boolean[] verdicts) throws InterruptedException {
+        if (workers == null || claims.size() == 1) {
+            for (int i = 0; i < claims.size(); i++)
+                verdicts[i] = env.util.testSet(claims.get(i).cards);
+            return;
+        }
+
+        List<Callable<Boolean>> tasks = new ArrayList<>(claims.size());
+        for (Claim claim : claims)
+            tasks.add(() -> env.util.testSet(claim.cards));
+        List<Future<Boolean>> results = workers.invokeAll(tasks);
+        try {
+            for (int i = 0; i < claims.size(); i++)
+                verdicts[i] = results.get(i).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("set check failed", e.getCause());
+        }
+    }
+
+    /**
+     * Stops the worker threads.
+     */
+    public void shutdown() {
+        if (workers != null) workers.shutdownNow();
+    }
+}
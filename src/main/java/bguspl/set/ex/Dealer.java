@@ -1,18 +1,24 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.LockProfiler;
+import bguspl.set.Tracer;
 
 import java.util.*;
 import java.util.logging.Level;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 import java.util.concurrent.*;
 
 /**
  * This class manages the dealer's threads and data
  */
+@SuppressWarnings("try") // the lock profiler's holds are never referenced inside their try-with-resources statements
 public class Dealer implements Runnable {
 
+    /**
+     * Orders claims by the time they were made.
+     */
+    private static final Comparator<Claim> BY_TIME = Comparator.comparingLong(claim -> claim.time);
+
     /**
      * The game environment object.
      */
@@ -25,9 +31,9 @@ public class Dealer implements Runnable {
     private final Player[] players;
 
     /**
-     * The list of card ids that are left in the dealer's deck.
+     * The card ids that are left in the dealer's deck.
      */
-    private final List<Integer> deck;
+    private final Deck deck;
 
     /**
      * True iff game should be terminated.
@@ -39,14 +45,43 @@ public class Dealer implements Runnable {
      */
     private long reshuffleTime = 0;
 
-    private BlockingQueue<Player> playersQueue;
+    /**
+     * The claims waiting for the dealer's verdict.
+     */
+    private final ClaimQueue claims;
+
+    /**
+     * Checks the claimed sets (possibly on worker threads).
+     */
+    private final ClaimVerifier verifier;
+
+    /**
+     * The batch of claims being checked and their verdicts (reused, so checking claims allocates nothing).
+     */
+    private final List<Claim> batch;
+    private final boolean[] verdicts;
+
+    /**
+     * Prints the sets on the table if hints are enabled (null otherwise).
+     */
+    private final HintService hints;
+
+    /**
+     * The source of the deck shuffles (seeded by the configuration).
+     */
+    private final Random random;
 
     public Dealer(Env env, Table table, Player[] players) {
         this.env = env;
         this.table = table;
         this.players = players;
-        deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
-        playersQueue = new LinkedBlockingQueue<Player>();
+        deck = new Deck(env.config.deckSize);
+        claims = new ClaimQueue(env.clock, env.config.players);
+        verifier = new ClaimVerifier(env);
+        batch = new ArrayList<>(env.config.players);
+        verdicts = new boolean[env.config.players];
+        hints = env.config.hints ? new HintService(env) : null;
+        random = new Random(env.config.seed);
     }
 
     /**
@@ -55,19 +90,31 @@ public class Dealer implements Runnable {
     @Override
     public void run() {
         env.logger.info("Thread " + Thread.currentThread().getName() + " starting.");
+        env.logger.info("game seed: " + env.config.seed);
+        env.clock.addParticipant(Thread.currentThread());
         for (Player player : players) {
-            Thread playerThread = new Thread(player);
+            Thread playerThread = new Thread(player, "player-" + player.id);
+            env.clock.addParticipant(playerThread);
             playerThread.start();
         }
 
         while (!shouldFinish()) {
-            Collections.shuffle(deck);
+            deck.shuffle(random);
+            env.journal.reshuffle(deck.size());
+            if (GameEvents.enabled()) {
+                GameEvents.Reshuffle reshuffle = new GameEvents.Reshuffle();
+                reshuffle.deckSize = deck.size();
+                reshuffle.commit();
+            }
             placeCardsOnTable();
             timerLoop();
             updateTimerDisplay(false);
             removeAllCardsFromTable();
         }
         announceWinners();
+        verifier.shutdown();
+        if (hints != null) hints.shutdown();
+        env.clock.removeParticipant(Thread.currentThread());
         env.logger.info("Thread " + Thread.currentThread().getName() + " terminated.");
     }
 
@@ -75,15 +122,20 @@ public class Dealer implements Runnable {
      * The inner loop of the dealer thread that runs as long as the countdown did not time out.
      */
     private void timerLoop() {
-        reshuffleTime = System.currentTimeMillis() + env.config.turnTimeoutMillis + 1000;
-        while (!terminate && System.currentTimeMillis() <= reshuffleTime) {
+        reshuffleTime = env.clock.millis() + env.config.turnTimeoutMillis + 1000;
+        while (!terminate && env.clock.millis() <= reshuffleTime) {
             sleepUntilWokenOrTimeout();
             updateTimerDisplay(false);
             placeCardsOnTable();
         }
+        // claims made on this turn's table are void
+        claims.voidAll();
         for(Player player: players){
-            synchronized (player){
-                player.notifyAll();
+            long requested = env.locks.request();
+            synchronized (player) {
+                try (LockProfiler.Hold hold = env.locks.hold("Player:Dealer.timerLoop", requested)) {
+                    env.clock.wake(player);
+                }
             }
         }
     }
@@ -92,8 +144,9 @@ public class Dealer implements Runnable {
      */
     public void terminate() {
         // TODO implement
-        long timer = System.currentTimeMillis() + env.config.endGamePauseMillies;
-        while (timer >= System.currentTimeMillis()) {
+        try {
+            env.clock.sleep(env.config.endGamePauseMillies);
+        } catch (InterruptedException ignored) {
         }
         terminate = true;
         for (Player player : players) {
@@ -107,7 +160,7 @@ public class Dealer implements Runnable {
      * @return true iff the game should be finished.
      */
     private boolean shouldFinish() {
-        return terminate || env.util.findSets(deck, 1).size() == 0;
+        return terminate || env.util.findSets(deck.view(), 1).size() == 0;
     }
 
     /**
@@ -117,84 +170,236 @@ public class Dealer implements Runnable {
         // TODO implement
     }
 
+    /**
+     * Removes the cards of a legal set from the table, along with all the tokens placed on them.
+     *
+     * @param player - the player that claimed the set.
+     */
     protected void removeSet(Player player) {
-        System.out.println(player.id + " player set: " + Arrays.toString(player.getPotentialSet()));
-        System.out.println(" set: " + Arrays.toString(table.getSlotToCard()));
-
-        for (int i = 0; i < 3; i++) {
-                int card = player.getPotentialSet()[i];
-                int slot = table.getCardToSlot()[card];
-                for (Player p : players) {
-                    if (p.getId() != player.getId()) {
-                        System.out.println("player " + p.id +" contains card " + card+ " :" +p.potentialSetContains(card));
-                        System.out.println(Arrays.toString(p.getPotentialSet()));
-                        if (p.potentialSetContains(card)) {
-
-                            table.removeToken(p.getId(), slot);
-                            System.out.println("before " + card +" was removed from " +p.id+": "+ Arrays.toString(p.getPotentialSet()));
-                            p.removeFromPotentialSet(card);
-                            System.out.println("after " + card +" was removed from " +p.id+": "+ Arrays.toString(p.getPotentialSet()));
-                        }
-                    }
-                    else {
-                            table.removeToken(player.getId(), slot);
-                    }
-                }
-
-                    table.removeCard(slot);
-
+        removeSet(player, player.getPotentialSet());
+    }
 
-            }
-            player.clearSet();
+    /**
+     * Removes the cards of a legal set from the table, along with all the tokens placed on them.
+     *
+     * @param player - the player that claimed the set.
+     * @param cards  - the cards of the set (e.g. the claimed cards, which are the player's potential set).
+     */
+    private void removeSet(Player player, int[] cards) {
+        for (int card : cards) {
+            if (card == -1) continue;
+            int slot = table.slotOf(card);
+            if (slot == Table.EMPTY) continue;
+            table.removeCard(slot);
+            removeTokens(slot, card);
+        }
+        player.clearSet();
+    }
 
+    /**
+     * Removes all the tokens from a slot, and the slot's card from the potential sets of their owners.
+     * Only the players that actually have a token on the slot are visited. Called after the card is removed from the
+     * slot, so that no token can be placed on it anymore (see Table.placeToken).
+     *
+     * @param slot - the slot.
+     * @param card - the card in the slot.
+     */
+    private void removeTokens(int slot, int card) {
+        for (int p = table.nextTokenOwner(slot, 0); p >= 0; p = table.nextTokenOwner(slot, p + 1)) {
+            players[p].removeFromPotentialSet(card);
+            table.removeToken(p, slot);
+        }
     }
 
     /**
      * Check if any cards can be removed from the deck and placed on the table.
      */
-    private void placeCardsOnTable() {
-        Integer[] slotToCard = table.getSlotToCard();
-        boolean placedCards = false;
-        for (int i = 0; i < slotToCard.length; i++) {
-            if (slotToCard[i] == null) {
-                if (deck.size() != 0) {
-                    table.placeCard(deck.remove(0), i);
-                    placedCards = true;
+    void placeCardsOnTable() {
+        GameEvents.Deal deal = GameEvents.enabled() ? new GameEvents.Deal() : null;
+        if (deal != null) deal.begin();
+        int deckSize = deck.size();
+        compactTable();
+        for (int i = 0; i < table.size(); i++) {
+            if (table.cardAt(i) == Table.EMPTY) {
+                if (!deck.isEmpty()) {
+                    table.placeCard(deck.draw(), i);
                 }
             }
         }
-//        if(env.config.hints==true&placedCards)
-//        {
-//            table.hints();
-//        }
+        if (env.config.smartDealing) ensureSetOnTable();
+        growTable();
+        if (deal != null && deck.size() < deckSize) {
+            deal.cards = deckSize - deck.size();
+            deal.tableSize = table.size();
+            deal.deckSize = deck.size();
+            deal.commit();
+        }
+        if (hints != null) hints.request(table);
     }
 
     /**
-     * Sleep for a fixed amount of time or until the thread is awakened for some purpose.
+     * @return - the cards on the table.
      */
-    private void sleepUntilWokenOrTimeout() {
-        // TODO implement
-
+    private List<Integer> tableCards() {
+        List<Integer> cards = new ArrayList<>(table.size());
+        for (int slot = 0; slot < table.size(); slot++)
+            if (table.cardAt(slot) != Table.EMPTY) cards.add(table.cardAt(slot));
+        return cards;
+    }
 
-            Player playerToCheck = null;
-            try {
+    /**
+     * Adds extra slots to the table (3 at a time, up to the table's capacity) and fills them from the deck, as long
+     * as the table holds no legal set.
+     */
+    private void growTable() {
+        while (table.size() < table.capacity() && !deck.isEmpty() && env.util.findSets(tableCards(), 1).isEmpty()) {
+            int from = table.size();
+            table.resize(Math.min(table.capacity(), from + 3));
+            for (int slot = from; slot < table.size() && !deck.isEmpty(); slot++)
+                table.placeCard(deck.draw(), slot);
+        }
+    }
 
-                playerToCheck = playersQueue.poll(1000, TimeUnit.MILLISECONDS);
-                if(playerToCheck != null){
+    /**
+     * Moves the cards in the extra slots (with their tokens) into the empty grid slots (instead of dealing new cards),
+     * then removes the extra slots left empty.
+     */
+    private void compactTable() {
+        int gridSize = env.config.tableSize;
+        int last = table.size() - 1;
+        for (int slot = 0; slot < gridSize && last >= gridSize; slot++) {
+            if (table.cardAt(slot) != Table.EMPTY) continue;
+            while (last >= gridSize && table.cardAt(last) == Table.EMPTY) --last;
+            if (last < gridSize) break;
+            int card = table.cardAt(last);
+            table.removeCard(last);
+            table.placeCard(card, slot);
+            // the tokens go with the card (the players' potential sets hold cards, so they stay as they are)
+            for (int p = table.nextTokenOwner(last, 0); p >= 0; p = table.nextTokenOwner(last, p + 1)) {
+                table.removeToken(p, last);
+                table.placeToken(p, slot);
+            }
+        }
+        while (last >= gridSize && table.cardAt(last) == Table.EMPTY) --last;
+        if (table.size() > gridSize) table.resize(Math.max(gridSize, last + 1));
+    }
 
-                    checkSet(playerToCheck);
-                        synchronized (playerToCheck){
-                            playerToCheck.notifyAll();
-                        }
+    /**
+     * Makes sure the table holds a legal set, if any set can be made of the table and deck cards, by swapping the
+     * fewest deck cards possible into the table in place of cards outside the set (preferably cards with no tokens).
+     */
+    private void ensureSetOnTable() {
+        List<Integer> tableCards = tableCards();
+        if (deck.isEmpty() || !env.util.findSets(tableCards, 1).isEmpty()) return;
+
+        int[] set = findSetWithMostTableCards(tableCards);
+        if (set == null) return;
+        for (int card : set) {
+            if (table.isOnTable(card)) continue;
+            int slot = slotToSwap(set);
+            if (slot < 0) return; // the table is too small to hold the set
+            deck.remove(card);
+            int old = table.cardAt(slot);
+            if (old != Table.EMPTY) {
+                removeTokens(slot, old);
+                table.removeCard(slot);
+                deck.put(old);
+            }
+            table.placeCard(card, slot);
+        }
+    }
 
-                }
+    /**
+     * @param tableCards - the cards on the table (with no legal set among them).
+     * @return - a legal set made of as many table cards as possible and deck cards (null if there is none).
+     */
+    private int[] findSetWithMostTableCards(List<Integer> tableCards) {
+        List<Integer> deckCards = deck.view();
+        int[] set = new int[env.config.featureSize];
+        for (int fromTable = set.length - 1; fromTable > 0; fromTable--)
+            if (completeSet(tableCards, deckCards, set, fromTable, 0, 0)) return set;
+        List<int[]> sets = env.util.findSets(deckCards, 1);
+        return sets.isEmpty() ? null : sets.get(0);
+    }
 
-            }
+    /**
+     * Fills the rest of a set with a combination of table cards (up to index fromTable) and then deck cards.
+     *
+     * @param set       - the set being filled.
+     * @param fromTable - the number of table cards in the set.
+     * @param index     - the index in the set to fill.
+     * @param next      - the index in the table (or deck) cards to fill it from.
+     * @return - true iff a legal set was completed.
+     */
+    private boolean completeSet(List<Integer> tableCards, List<Integer> deckCards, int[] set, int fromTable,
+                                int index, int next) {
+        if (index == set.length) return env.util.testSet(set);
+        List<Integer> cards = index < fromTable ? tableCards : deckCards;
+        for (int i = index == fromTable ? 0 : next; i < cards.size(); i++) {
+            set[index] = cards.get(i);
+            if (completeSet(tableCards, deckCards, set, fromTable, index + 1, i + 1)) return true;
+        }
+        return false;
+    }
 
-            catch (InterruptedException e) {}
+    /**
+     * @param set - the set being dealt.
+     * @return - an empty slot if any, otherwise the slot of a card outside the set (preferably with no tokens), or -1
+     * if every slot holds a card of the set.
+     */
+    private int slotToSwap(int[] set) {
+        int fallback = -1;
+        for (int slot = 0; slot < table.size(); slot++) {
+            int card = table.cardAt(slot);
+            if (card == Table.EMPTY) return slot;
+            if (contains(set, card)) continue;
+            if (table.nextTokenOwner(slot, 0) < 0) return slot;
+            if (fallback < 0) fallback = slot;
+        }
+        return fallback;
+    }
 
+    private static boolean contains(int[] cards, int card) {
+        for (int c : cards)
+            if (c == card) return true;
+        return false;
+    }
 
+    /**
+     * Sleep for a fixed amount of time or until the thread is awakened for some purpose.
+     */
+    private void sleepUntilWokenOrTimeout() {
+        try {
+            Claim claim = claims.poll(1000);
+            if (claim == null) return;
+            for (; claim != null; claim = claims.poll())
+                batch.add(claim);
+            checkSets(batch);
+        } catch (InterruptedException ignored) {
+        } finally {
+            batch.clear();
+        }
+    }
 
+    /**
+     * Verifies a batch of claims (in parallel if configured), then commits the verdicts in the order the claims
+     * were made. A claim that lost any of its cards to an earlier claim of the batch gets no verdict, and so do the
+     * claims left uncommitted if the dealer is interrupted (their players are released, so they can claim again).
+     *
+     * @param batch - the claims to check.
+     */
+    void checkSets(List<Claim> batch) throws InterruptedException {
+        batch.sort(BY_TIME);
+        boolean[] verdicts = batch.size() <= this.verdicts.length ? this.verdicts : new boolean[batch.size()];
+        int committed = 0;
+        try {
+            verifier.verify(batch, verdicts);
+            for (; committed < batch.size(); committed++)
+                commit(batch.get(committed), verdicts[committed]);
+        } finally {
+            for (int i = committed; i < batch.size(); i++)
+                release(batch.get(i));
+        }
     }
 
     /**
@@ -202,9 +407,9 @@ public class Dealer implements Runnable {
      */
     private void updateTimerDisplay(boolean reset) {
         if (reset) {
-            reshuffleTime = env.config.turnTimeoutMillis + System.currentTimeMillis();
+            reshuffleTime = env.config.turnTimeoutMillis + env.clock.millis();
         } else {
-            long currentTime = System.currentTimeMillis();
+            long currentTime = env.clock.millis();
             env.ui.setCountdown(Math.round((reshuffleTime - currentTime + 1000) / 1000) * 1000, env.config.turnTimeoutWarningMillis >= reshuffleTime - currentTime + 1000);
         }
     }
@@ -213,19 +418,15 @@ public class Dealer implements Runnable {
      * Returns all the cards from the table to the deck.
      */
     private void removeAllCardsFromTable() {
-        for (int i = 0; i < 12; i++) {
-            if (table.slotToCard[i] != null) {
-                int card = table.slotToCard[i];
+        for (int i = 0; i < table.size(); i++) {
+            int card = table.cardAt(i);
+            if (card != Table.EMPTY) {
                 table.removeCard(i);
-                deck.add(card);
-                for (Player player : players) {
-                    if (player.potentialSetContains(card)) {
-                        player.removeFromPotentialSet(card);
-                        table.removeToken(player.getId(), i);
-                    }
-                }
+                removeTokens(i, card);
+                deck.put(card);
             }
         }
+        if (table.size() > env.config.tableSize) table.resize(env.config.tableSize);
     }
 
     public void removeAllCardsFromTableTest() {
@@ -262,44 +463,83 @@ public class Dealer implements Runnable {
         env.ui.announceWinner(winnersArray);
     }
 
-    public void checkSet(Player player) {
-        if (player.getPotentialSetSize() == 3) {
-            boolean isSet = env.util.testSet(player.getPotentialSet());
+    /**
+     * Checks a player's claim, rewards or penalizes the player and releases it.
+     * A claim whose cards are no longer all under the player's tokens (e.g. another player's set took some of
+     * them meanwhile) gets no verdict.
+     *
+     * @param claim - the claim to check.
+     */
+    public void checkSet(Claim claim) {
+        commit(claim, env.util.testSet(claim.cards));
+    }
+
+    /**
+     * Applies the verdict of a claim (see checkSet).
+     *
+     * @param claim - the claim.
+     * @param isSet - true iff the claimed cards form a legal set.
+     */
+    private void commit(Claim claim, boolean isSet) {
+        Player player = players[claim.player];
+        env.tracer.stage(claim.trace, Tracer.VERDICT);
+        boolean current = isCurrent(claim);
+        if (GameEvents.enabled()) {
+            GameEvents.Verdict verdict = new GameEvents.Verdict();
+            if (verdict.shouldCommit()) {
+                verdict.player = claim.player;
+                verdict.legal = isSet;
+                verdict.current = current;
+                verdict.claimAge = System.nanoTime() - claim.time;
+                verdict.commit();
+            }
+        }
+        if (current) {
+            env.journal.claim(claim.player, claim.cards);
+            env.journal.verdict(claim.player, isSet);
 
             if (isSet) {
                 //clear player's actions:
-                System.out.println("checked set of "+player.getId());
-                removeSet(player);
+                removeSet(player, claim.cards);
                 player.setFrozenState(1);
                 placeCardsOnTable();
                 updateTimerDisplay(true);
             } else {
                 player.setFrozenState(3);
             }
+        }
+        release(claim);
+    }
 
+    /**
+     * Marks a claim as handled and wakes its player, who waits for the verdict.
+     *
+     * @param claim - the claim.
+     */
+    private void release(Claim claim) {
+        Player player = players[claim.player];
+        claims.done(claim.player);
+        long requested = env.locks.request();
+        synchronized (player) {
+            try (LockProfiler.Hold hold = env.locks.hold("Player:Dealer.release", requested)) {
+                env.clock.wake(player);
             }
-        synchronized (player){
-            player.notifyAll();
-        }
         }
+    }
 
-
-
-//    public void checkPlayer(Player player) {
-//        if (!playersQueue.contains(player)) {
-//            synchronized (player) {
-//                playersQueue.add(player);
-//                try{player.wait();} catch (InterruptedException e){}
-//            }
-//        }
-//    }
+    private boolean isCurrent(Claim claim) {
+        Player player = players[claim.player];
+        for (int card : claim.cards)
+            if (card == -1 || !table.isOnTable(card) || !player.potentialSetContains(card)) return false;
+        return true;
+    }
 
     public List<Integer> getDeck() {
-        return deck;
+        return deck.view();
     }
 
-    public synchronized BlockingQueue<Player> getPlayersQueue() {
-        return playersQueue;
+    public ClaimQueue getClaims() {
+        return claims;
     }
 
 
@@ -0,0 +1,133 @@
+package bguspl.set.ex;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The cards left in the dealer's deck, kept in a primitive array.
+ * Cards are drawn from (and returned to) the top of the deck, so both cost O(1).
+ *
+ * @inv 0 <= size <= cards.length
+ * @inv contains(card) iff card is in cards[0..size)
+ */
+public class Deck {
+
+    /**
+     * The cards in the deck, the top of the deck is cards[size - 1].
+     */
+    private final int[] cards;
+
+    /**
+     * The number of cards left in the deck.
+     */
+    private int size;
+
+    /**
+     * A bitmap of the cards currently in the deck.
+     */
+    private final long[] present;
+
+    /**
+     * A read-only view of the deck (see view method).
+     */
+    private final List<Integer> view;
+
+    /**
+     * Creates a full deck.
+     *
+     * @param deckSize - the number of cards in the game.
+     */
+    public Deck(int deckSize) {
+        cards = new int[deckSize];
+        present = new long[(deckSize + 63) / 64];
+        for (int card = 0; card < deckSize; ++card)
+            put(card);
+        view = new AbstractList<Integer>() {
+            @Override
+            public Integer get(int index) {
+                if (index < 0 || index >= size) throw new IndexOutOfBoundsException("index: " + index);
+                return cards[index];
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param card - the card id.
+     * @return - true iff the card is in the deck.
+     */
+    public boolean contains(int card) {
+        return (present[card >>> 6] & (1L << card)) != 0;
+    }
+
+    /**
+     * Removes the top card of the deck.
+     *
+     * @return - the card drawn.
+     * @pre - the deck is not empty.
+     */
+    public int draw() {
+        int card = cards[--size];
+        present[card >>> 6] &= ~(1L << card);
+        return card;
+    }
+
+    /**
+     * Returns a card to the top of the deck.
+     *
+     * @param card - the card id.
+     * @pre - the card is not in the deck.
+     */
+    public void put(int card) {
+        cards[size++] = card;
+        present[card >>> 6] |= 1L << card;
+    }
+
+    /**
+     * Removes a card from the deck (wherever it is).
+     *
+     * @param card - the card id.
+     * @pre - the card is in the deck.
+     */
+    public void remove(int card) {
+        int index = size - 1;
+        while (cards[index] != card) --index;
+        System.arraycopy(cards, index + 1, cards, index, size - index - 1);
+        --size;
+        present[card >>> 6] &= ~(1L << card);
+    }
+
+    /**
+     * Shuffles the cards left in the deck in place (Fisher-Yates).
+     *
+     * @param random - the source of randomness.
+     */
+    public void shuffle(Random random) {
+        for (int i = size - 1; i > 0; --i) {
+            int j = random.nextInt(i + 1);
+            int card = cards[i];
+            cards[i] = cards[j];
+            cards[j] = card;
+        }
+    }
+
+    /**
+     * @return - a read-only list view of the cards left in the deck (reflects later changes).
+     */
+    public List<Integer> view() {
+        return view;
+    }
+}
@@ -0,0 +1,146 @@
+package bguspl.set.ex;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * The game's JDK Flight Recorder events, so that recordings line game events up with GC, CPU and lock samples.
+ * They cost almost nothing while no recording is running (e.g. start one with -XX:StartFlightRecording).
+ */
+public final class GameEvents {
+
+    private static final String CATEGORY = "Set Game";
+
+    private GameEvents() {
+    }
+
+    /**
+     * Loading the first event class initializes the flight recorder, which takes about a second, so the events are not
+     * created at all until something else started the recorder (a command line recording, jcmd or a Recording).
+     *
+     * @return - true iff the flight recorder was initialized.
+     */
+    public static boolean enabled() {
+        return FlightRecorder.isInitialized();
+    }
+
+    /**
+     * Called right after entering the table's monitor.
+     *
+     * @param operation - the table operation holding the monitor.
+     * @return - the event to pass to releaseTable, or null if the recorder is not initialized.
+     */
+    static TableLock holdTable(String operation) {
+        return enabled() ? new TableLock(operation) : null;
+    }
+
+    /**
+     * Called right before leaving the table's monitor.
+     *
+     * @param held - the event returned by holdTable.
+     */
+    static void releaseTable(TableLock held) {
+        if (held != null) held.commit();
+    }
+
+    @Name("bguspl.set.Deal")
+    @Label("Deal")
+    @Description("The dealer filled the table (the event lasts as long as the dealing)")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class Deal extends Event {
+
+        @Label("Cards Placed")
+        public int cards;
+
+        @Label("Table Size")
+        public int tableSize;
+
+        @Label("Deck Size")
+        public int deckSize;
+    }
+
+    @Name("bguspl.set.ClaimSubmitted")
+    @Label("Claim Submitted")
+    @Description("A player handed its tokens to the dealer as a claim")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class ClaimSubmitted extends Event {
+
+        @Label("Player")
+        public int player;
+
+        @Label("Cards")
+        public String cards;
+    }
+
+    @Name("bguspl.set.Verdict")
+    @Label("Verdict")
+    @Description("The dealer decided a claim")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class Verdict extends Event {
+
+        @Label("Player")
+        public int player;
+
+        @Label("Legal Set")
+        public boolean legal;
+
+        @Label("Current")
+        @Description("False if the claimed cards changed before the verdict (no point or penalty)")
+        public boolean current;
+
+        @Label("Claim Age (ns)")
+        @Description("The time from the claim to the verdict")
+        public long claimAge;
+    }
+
+    @Name("bguspl.set.Freeze")
+    @Label("Freeze")
+    @Description("A player was frozen (the event lasts from the start of the freeze to its end)")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class Freeze extends Event {
+
+        @Label("Player")
+        public int player;
+
+        @Label("Freeze Time (ms)")
+        public long millis;
+    }
+
+    @Name("bguspl.set.Reshuffle")
+    @Label("Reshuffle")
+    @Description("The dealer shuffled the deck for a new turn")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class Reshuffle extends Event {
+
+        @Label("Deck Size")
+        public int deckSize;
+    }
+
+    @Name("bguspl.set.TableLock")
+    @Label("Table Lock Held")
+    @Description("A thread held the table's monitor")
+    @Category(CATEGORY)
+    @Threshold("20 us")
+    @StackTrace(false)
+    public static final class TableLock extends Event {
+
+        @Label("Operation")
+        public String operation;
+
+        private TableLock(String operation) {
+            this.operation = operation;
+            begin();
+        }
+    }
+}
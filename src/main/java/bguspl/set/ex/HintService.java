@@ -0,0 +1,118 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Logs the legal sets on the table as hints, on a background thread (to the log rather than the standard output,
+ * which the terminal user interface draws on).
+ * The sets found for a table are cached by the table's cards (the table's bitmap of its cards), so a table that comes back (e.g. the same
+ * cards in other slots) is not searched again, and a table that did not change is not logged again.
+ */
+public class HintService {
+
+    /**
+     * The maximum number of tables whose sets are cached (the least recently used are evicted).
+     */
+    private static final int CACHE_SIZE = 1024;
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    /**
+     * The sets found per table (guarded by this).
+     */
+    private final Map<BitSet, List<int[]>> cache = new LinkedHashMap<BitSet, List<int[]>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<BitSet, List<int[]>> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     * The cards of the last table hinted (accessed only by the requesting thread).
+     */
+    private BitSet lastCards;
+
+    private final ExecutorService printer;
+
+    public HintService(Env env) {
+        this.env = env;
+        this.printer = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "hints");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Logs the sets on the table in the background, unless the table's cards did not change since the last call.
+     *
+     * @param table - the table.
+     */
+    public void request(Table table) {
+        int[] slotToCard;
+        BitSet cards;
+        synchronized (table) { // the cards and the slots of the same table
+            slotToCard = table.getSlotToCard();
+            cards = table.cards();
+        }
+        if (cards.equals(lastCards)) return;
+        lastCards = cards;
+        printer.execute(() -> log(slotToCard, findSets(cards)));
+    }
+
+    /**
+     * Finds all the legal sets among the cards on the table (cached).
+     *
+     * @param table - the table.
+     * @return - the sets (each sorted by card id).
+     */
+    public List<int[]> findSets(Table table) {
+        return findSets(table.cards());
+    }
+
+    private List<int[]> findSets(BitSet cards) {
+        synchronized (this) {
+            List<int[]> sets = cache.get(cards);
+            if (sets != null) return sets;
+        }
+        List<Integer> deck = new ArrayList<>(cards.cardinality());
+        for (int card = cards.nextSetBit(0); card >= 0; card = cards.nextSetBit(card + 1))
+            deck.add(card);
+        List<int[]> sets = env.util.findSets(deck, Integer.MAX_VALUE);
+        synchronized (this) {
+            cache.put(cards, sets);
+        }
+        return sets;
+    }
+
+    private void log(int[] slotToCard, List<int[]> sets) {
+        for (int[] set : sets) {
+            int[] slots = new int[set.length];
+            for (int i = 0; i < set.length; i++)
+                for (int slot = 0; slot < slotToCard.length; slot++)
+                    if (slotToCard[slot] == set[i]) slots[i] = slot;
+            Arrays.sort(slots);
+            env.logger.info("Hint: Set found: slots: " + Arrays.toString(slots)
+                    + " features: " + Arrays.deepToString(env.util.cardsToFeatures(set)));
+        }
+    }
+
+    /**
+     * Stops the background thread.
+     */
+    public void shutdown() {
+        printer.shutdownNow();
+    }
+}
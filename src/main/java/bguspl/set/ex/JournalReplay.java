@@ -0,0 +1,164 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.Journal;
+import bguspl.set.UserInterfaceDecorator;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * Re-drives a table (and the dealer's scoring) from a recorded game journal.
+ */
+public class JournalReplay {
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    /**
+     * The table the journal is replayed on.
+     */
+    private final Table table;
+
+    /**
+     * The replay speed relative to the recorded game (0 or less replays as fast as possible).
+     */
+    private final double speed;
+
+    private final long[] typeCounts = new long[Journal.RESHUFFLE + 1];
+    private int[] scores = new int[0];
+    private int[][] claims = new int[0][];
+    private int verdictMismatches;
+
+    /**
+     * @param env   - the game environment objects (the table delay should be 0 for faster than real time replays).
+     * @param table - the table to replay the journal on.
+     * @param speed - the replay speed relative to the recorded game (0 or less for as fast as possible).
+     */
+    public JournalReplay(Env env, Table table, double speed) {
+        this.env = env;
+        this.table = table;
+        this.speed = speed;
+    }
+
+    /**
+     * Replays all the records in the journal buffer.
+     *
+     * @param records - the journal records (see Journal.read).
+     * @return - the number of records replayed.
+     */
+    public long replay(ByteBuffer records) {
+        scores = new int[Journal.players(records)];
+        claims = new int[scores.length][];
+        long start = System.nanoTime();
+        long replayed = 0;
+        long recordedTime = 0;
+        while (records.remaining() >= Journal.RECORD_SIZE) {
+            int offset = records.position();
+            recordedTime = records.getLong(offset);
+            int type = records.getInt(offset + 8);
+            if (type == Journal.END) break;
+            if (speed > 0) pace(start, recordedTime);
+            apply(type, records.getInt(offset + 12), records.getInt(offset + 16), records.getInt(offset + 20),
+                    records.getInt(offset + 24));
+            records.position(offset + Journal.RECORD_SIZE);
+            ++replayed;
+        }
+        long elapsed = System.nanoTime() - start;
+        env.logger.info("replayed " + replayed + " records (" + recordedTime / 1000000 + "ms of play) in "
+                + elapsed / 1000000 + "ms, counts by type: " + Arrays.toString(typeCounts)
+                + ", scores: " + Arrays.toString(scores) + ", verdict mismatches: " + verdictMismatches);
+        return replayed;
+    }
+
+    private void pace(long start, long recordedTime) {
+        long target = start + (long) (recordedTime / speed);
+        long now;
+        while ((now = System.nanoTime()) < target) {
+            try {
+                Thread.sleep((target - now) / 1000000, (int) ((target - now) % 1000000));
+            } catch (InterruptedException ignored) {
+                return;
+            }
+        }
+    }
+
+    private void apply(int type, int player, int a, int b, int c) {
+        if (type < typeCounts.length) typeCounts[type]++;
+        switch (type) {
+            case Journal.CARD_PLACED:
+                table.placeCard(a, b);
+                break;
+            case Journal.CARD_REMOVED:
+                table.removeCard(b);
+                break;
+            case Journal.TOKEN_PLACED:
+                table.placeToken(player, a);
+                break;
+            case Journal.TOKEN_REMOVED:
+                table.removeToken(player, a);
+                break;
+            case Journal.CLAIM:
+                claims[player] = new int[]{a, b, c};
+                break;
+            case Journal.VERDICT:
+                // re-check the claim so that a changed Util implementation shows up as a mismatch
+                boolean legal = a == 1;
+                if (claims[player] != null && env.util.testSet(claims[player]) != legal) ++verdictMismatches;
+                claims[player] = null;
+                if (legal) env.ui.setScore(player, ++scores[player]);
+                break;
+            case Journal.FREEZE:
+                env.ui.setFreeze(player, a);
+                break;
+            case Journal.RESHUFFLE:
+                break;
+            default:
+                env.logger.severe("unknown journal record type " + type);
+        }
+    }
+
+    public int[] getScores() {
+        return scores;
+    }
+
+    public int getVerdictMismatches() {
+        return verdictMismatches;
+    }
+
+    /**
+     * Replays a journal file without a user interface.
+     *
+     * @param args - the journal file name, and optionally the replay speed (default: as fast as possible).
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("usage: JournalReplay <journal file> [speed]");
+            return;
+        }
+        Logger logger = Logger.getLogger("JournalReplay");
+        Properties properties = new Properties();
+        if (Files.exists(Paths.get("config.properties")))
+            try (InputStream is = Files.newInputStream(Paths.get("config.properties"))) {
+                properties.load(is);
+            }
+        properties.setProperty("TableDelaySeconds", "0");
+        Config config = new Config(logger, properties);
+        Util util = new UtilImpl(config);
+        Env env = new Env(logger, config, new UserInterfaceDecorator(logger, util, null), util);
+
+        double speed = args.length > 1 ? Double.parseDouble(args[1]) : 0;
+        new JournalReplay(env, new Table(env), speed).replay(Journal.read(args[0]));
+    }
+}
@@ -0,0 +1,83 @@
+package bguspl.set.ex;
+
+import bguspl.set.Clock;
+
+/**
+ * A bounded FIFO queue of a player's pending key presses, each packed in a long, that allocates nothing (unlike a
+ * BlockingQueue of boxed Longs, whose nodes and boxes would make every key press garbage).
+ */
+class KeyPressQueue {
+
+    /**
+     * Returned by poll when there is no key press (not a valid packed key press).
+     */
+    static final long EMPTY = Long.MIN_VALUE;
+
+    /**
+     * The game clock, which keeps the time of the waits and is told of the wake ups.
+     */
+    private final Clock clock;
+
+    private final long[] presses;
+    private int head;
+    private int size;
+
+    /**
+     * @param clock    - the game clock.
+     * @param capacity - the maximum number of pending key presses.
+     */
+    KeyPressQueue(Clock clock, int capacity) {
+        this.clock = clock;
+        presses = new long[capacity];
+    }
+
+    /**
+     * Adds a key press, unless the queue is full.
+     *
+     * @param press - the packed key press.
+     * @return - true iff the key press was added.
+     */
+    synchronized boolean offer(long press) {
+        if (size == presses.length) return false;
+        presses[(head + size++) % presses.length] = press;
+        clock.wake(this);
+        return true;
+    }
+
+    /**
+     * Adds a key press, waiting while the queue is full (until a key press is retrieved).
+     *
+     * @param press - the packed key press.
+     */
+    synchronized void put(long press) throws InterruptedException {
+        while (size == presses.length) clock.waitOn(this);
+        offer(press);
+    }
+
+    /**
+     * Retrieves and removes the oldest key press, waiting up to the specified time for one to arrive.
+     *
+     * @param millis - the maximum time to wait.
+     * @return - the oldest key press, or EMPTY if none arrived in time.
+     */
+    synchronized long poll(long millis) throws InterruptedException {
+        long deadline = clock.millis() + millis;
+        while (size == 0) {
+            long left = deadline - clock.millis();
+            if (left <= 0) return EMPTY;
+            clock.waitOn(this, left);
+        }
+        long press = presses[head];
+        head = (head + 1) % presses.length;
+        --size;
+        clock.wake(this);
+        return press;
+    }
+
+    /**
+     * @return - true iff another key press can be added.
+     */
+    synchronized boolean hasRoom() {
+        return size < presses.length;
+    }
+}
@@ -1,11 +1,12 @@
 package bguspl.set.ex;
 
 import java.util.*;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
 import bguspl.set.Env;
+import bguspl.set.LockProfiler;
+import bguspl.set.Tracer;
 
 /**
  * This class manages the players' threads and data
@@ -13,8 +14,31 @@ import bguspl.set.Env;
  * @inv id >= 0
  * @inv score >= 0
  */
+@SuppressWarnings("try") // the lock profiler's holds are never referenced inside their try-with-resources statements
 public class Player implements Runnable {
 
+    /**
+     * The maximum time (in milliseconds) the player thread waits for a key press before checking its state again.
+     */
+    private static final long KEY_PRESS_POLL_MILLIS = 1000;
+
+    /**
+     * The maximum number of pending key presses.
+     */
+    private static final int KEY_PRESS_CAPACITY = 3;
+
+    /**
+     * The time (in milliseconds) the AI takes to press a key (so that it paces the game's time instead of keeping it
+     * still with endless key presses).
+     */
+    private static final long AI_WAIT_MILLIS = 50;
+
+    /**
+     * The number of bits per card in the packed token word (cards are stored + 1, so that 0 marks an empty place).
+     */
+    private static final int CARD_BITS = 20;
+    private static final long CARD_MASK = (1L << CARD_BITS) - 1;
+
     /**
      * The game environment object.
      */
@@ -56,12 +80,33 @@ public class Player implements Runnable {
     private int score;
     private Dealer dealer;
 
-    private BlockingQueue<Integer> keyPressesTokens;
-    private int[] potentialSet;
+    /**
+     * The pending key presses, each packed as the trace id (high 32 bits) and the slot (low 32 bits).
+     */
+    private final KeyPressQueue keyPressesTokens;
+
+    /**
+     * The player's claim, reused for every claim it makes (a player has at most one claim pending at a time).
+     */
+    private final Claim claim;
+
+    /**
+     * The trace id of the key press that completed the pending claim (Tracer.NONE if none).
+     */
+    private int claimTrace = Tracer.NONE;
+
+    /**
+     * The cards the player placed tokens on, packed CARD_BITS bits per card (in the order they were placed).
+     * Updated only by compare-and-set, so token toggles and the dealer's sweeps never take the player's monitor.
+     */
+    private final AtomicLong potentialSet;
 
     private int frozenState;
 
-    private int potentialSetSize;
+    /**
+     * The time the current freeze ends (so that the AI sleeps through it).
+     */
+    private volatile long frozenUntil;
 
     private Object key;
 
@@ -80,13 +125,10 @@ public class Player implements Runnable {
         this.table = table;
         this.id = id;
         this.human = human;
-        this.keyPressesTokens = new LinkedBlockingQueue<Integer>();
-        this.potentialSet = new int[3];
-        for (int i = 0; i < 3; i++) {
-            potentialSet[i] = -1;
-        }
+        this.keyPressesTokens = new KeyPressQueue(env.clock, KEY_PRESS_CAPACITY);
+        this.claim = new Claim(id, new int[3], 0);
+        this.potentialSet = new AtomicLong();
         this.frozenState = 0;
-        this.potentialSetSize = 0;
         this.key = new Object();
     }
 
@@ -106,24 +148,36 @@ public class Player implements Runnable {
             //check if player is frozen:
 
 
-            if (keyPressesTokens.size() > 0) {
-                int token = keyPressesTokens.remove();
-                if (table.slotToCard[token] != null) {
-                    //  System.out.println(table.slotToCard[token]);
-                    int card = table.slotToCard[token];
-                    if (potentialSetContains(card)) {
-                        removeFromPotentialSet(card);
+            long press = KeyPressQueue.EMPTY;
+            try {
+                press = keyPressesTokens.poll(KEY_PRESS_POLL_MILLIS);
+            } catch (InterruptedException ignored) {
+            }
+            if (press != KeyPressQueue.EMPTY) {
+                int token = (int) press;
+                int trace = (int) (press >> 32);
+                env.tracer.stage(trace, Tracer.CONSUMED);
+                int card = table.cardAt(token);
+                if (card != Table.EMPTY) {
+                    if (removeFromPotentialSet(card)) {
                         table.removeToken(id, token);
-                    } else if (potentialSetSize < 3) {
-                        addToPotentialSet(card);
-                        table.placeToken(id, token);
-                        if (potentialSetSize == 3) {
-                            //System.out.println("dealer is going to check me: "+id);
-                            checkPlayer();
+                        env.tracer.stage(trace, Tracer.TOKEN_PLACED);
+                    } else if (addToPotentialSet(card)) {
+                        if (!table.placeToken(id, token, card)) {
+                            // the dealer removed the card meanwhile (and so did not see this token)
+                            removeFromPotentialSet(card);
+                        } else {
+                            env.tracer.stage(trace, Tracer.TOKEN_PLACED);
+                            if (getPotentialSetSize() == 3) {
+                                //System.out.println("dealer is going to check me: "+id);
+                                checkPlayer(trace);
+                                trace = Tracer.NONE; // finished once the claim's outcome is shown
                             }
                         }
                     }
                 }
+                env.tracer.finish(trace);
+                }
             if (frozenState == 1) {
                 point();
                 frozenState = 0;
@@ -133,14 +187,21 @@ public class Player implements Runnable {
                 penalty();
                 frozenState = 0;
             }
+            if (claimTrace != Tracer.NONE) { // a claim that got no verdict
+                env.tracer.finish(claimTrace);
+                claimTrace = Tracer.NONE;
+            }
 
             }
 
 
+        // the AI may be waiting on the clock, whose time may not advance while this thread waits for it
         if (!human) try {
+            aiThread.interrupt();
             aiThread.join();
         } catch (InterruptedException ignored) {
         }
+        env.clock.removeParticipant(playerThread);
         env.logger.info("Thread " + Thread.currentThread().getName() + " terminated.");
     }
 
@@ -152,31 +213,57 @@ public class Player implements Runnable {
         // note: this is a very very smart AI (!)
         aiThread = new Thread(() -> {
             env.logger.info("Thread " + Thread.currentThread().getName() + " starting.");
+            // a participant, so that the time does not advance while it is about to press a key
+            // each player gets its own stream derived from the game seed, so runs are reproducible
+            Random random = new Random(env.config.seed + id + 1);
             while (!terminate) {
                 // TODO implement player key press simulator
 //                try {
 //                    synchronized (this) { Thread.currentThread().sleep(10); }
 //                } catch (InterruptedException ignored) {}
-                Random random = new Random();
-                int slot = random.nextInt(env.config.tableSize);
-                keyPressed(slot);
+                int slot = random.nextInt(table.size());
+                try {
+                    aiKeyPressed(slot);
+                } catch (InterruptedException ignored) {
+                }
             }
+            env.clock.removeParticipant(Thread.currentThread());
             env.logger.info("Thread " + Thread.currentThread().getName() + " terminated.");
         }, "computer-" + id);
+        env.clock.addParticipant(aiThread);
         aiThread.start();
     }
 
+    /**
+     * Queues a key press of the AI, waiting while the queue is full or the player is frozen (instead of spinning).
+     * The waits are on the game clock, since the AI thread takes part in the clock's time.
+     *
+     * @param slot - the slot corresponding to the key pressed.
+     */
+    private void aiKeyPressed(int slot) throws InterruptedException {
+        if (frozenState != 0) {
+            env.clock.sleep(Math.max(AI_WAIT_MILLIS, frozenUntil - env.clock.millis()));
+            return;
+        }
+        if (table.cardAt(slot) != Table.EMPTY) {
+            int trace = env.tracer.begin(System.nanoTime());
+            long press = (long) trace << 32 | slot;
+            keyPressesTokens.put(press);
+            env.tracer.stage(trace, Tracer.ENQUEUED);
+        }
+        env.clock.sleep(AI_WAIT_MILLIS);
+    }
+
     /**
      * Called when the game should be terminated.
      */
     public void terminate() {
-
+        terminate = true;
         try {
             playerThread.interrupt();
             playerThread.join();
         } catch (InterruptedException e) {
         }
-        terminate = true;
     }
 
     /**
@@ -185,9 +272,20 @@ public class Player implements Runnable {
      * @param slot - the slot corresponding to the key pressed.
      */
     public void keyPressed(int slot) {
+        keyPressed(slot, System.nanoTime());
+    }
+
+    /**
+     * This method is called when a key is pressed.
+     *
+     * @param slot         - the slot corresponding to the key pressed.
+     * @param pressedNanos - the time the key was pressed (System.nanoTime), for latency tracing.
+     */
+    public void keyPressed(int slot, long pressedNanos) {
         if (frozenState == 0) {
-            if (table.slotToCard[slot] != null && keyPressesTokens.size() < 3) {
-                keyPressesTokens.add(slot);
+            if (table.cardAt(slot) != Table.EMPTY && keyPressesTokens.hasRoom()) {
+                int trace = env.tracer.begin(pressedNanos);
+                if (keyPressesTokens.offer((long) trace << 32 | slot)) env.tracer.stage(trace, Tracer.ENQUEUED);
             }
         }
     }
@@ -201,11 +299,9 @@ public class Player implements Runnable {
     public void point() {
         // TODO implement
         env.ui.setScore(id, ++score);
-        long timer = System.currentTimeMillis() + env.config.pointFreezeMillis + 1000;
-        while (System.currentTimeMillis() < timer - 1000) {
-            env.ui.setFreeze(id, timer - System.currentTimeMillis());
-        }
-        env.ui.setFreeze(id, -1000);
+        finishClaimTrace();
+        env.journal.freeze(id, env.config.pointFreezeMillis);
+        freeze(env.config.pointFreezeMillis);
 
 
         int ignored = table.countCards(); // this part is just for demonstration in the unit tests
@@ -217,87 +313,189 @@ public class Player implements Runnable {
      */
     public void penalty() {
         // TODO implement: if(playerThread.getState() != Thread.State.WAITING)
+        env.journal.freeze(id, env.config.penaltyFreezeMillis);
+        freeze(env.config.penaltyFreezeMillis);
+    }
 
-        long timer = System.currentTimeMillis() + env.config.penaltyFreezeMillis + 1000;
-        while (System.currentTimeMillis() < timer - 1000) {
-            env.ui.setFreeze(id, timer - System.currentTimeMillis());
+    /**
+     * Freezes the player, updating the remaining freeze time in the ui once per second.
+     *
+     * @param millis - the freeze time in milliseconds.
+     */
+    private void freeze(long millis) {
+        GameEvents.Freeze event = GameEvents.enabled() ? new GameEvents.Freeze() : null;
+        if (event != null) event.begin();
+        long timer = env.clock.millis() + millis + 1000;
+        frozenUntil = timer - 1000;
+        long now;
+        while ((now = env.clock.millis()) < timer - 1000) {
+            env.ui.setFreeze(id, timer - now);
+            finishClaimTrace();
+            try {
+                env.clock.sleep((timer - 1000 - now - 1) % 1000 + 1); // until the next whole second
+            } catch (InterruptedException ignored) {
+            }
         }
         env.ui.setFreeze(id, -1000);
+        finishClaimTrace(); // the freeze may have been too short to show before
+        if (event != null) {
+            event.player = id;
+            event.millis = millis;
+            event.commit();
+        }
     }
 
     public int score() {
         return score;
     }
 
-    public Queue<Integer> getKeyPressesTokens() {
-        return keyPressesTokens;
-    }
-
     public int getId() {
         return id;
     }
 
-    public synchronized int[] getPotentialSet() {
-        return potentialSet;
-    }
-
     public void setFrozenState(int i) {
         this.frozenState = i;
     }
 
 
-    public synchronized int getPotentialSetSize() {
-        return potentialSetSize;
+    /**
+     * @return - a snapshot of the cards the player placed tokens on (-1 for unused places).
+     */
+    public int[] getPotentialSet() {
+        long tokens = potentialSet.get();
+        return new int[]{cardAt(tokens, 0), cardAt(tokens, 1), cardAt(tokens, 2)};
     }
 
-    public synchronized void addToPotentialSet(int card) {
-        getPotentialSet()[potentialSetSize] = card;
-        potentialSetSize++;
+    /**
+     * Copies the cards the player placed tokens on into an array (without allocating, unlike getPotentialSet).
+     *
+     * @param cards - the array to fill (of length 3, -1 for unused places).
+     */
+    void copyPotentialSet(int[] cards) {
+        long tokens = potentialSet.get();
+        for (int i = 0; i < cards.length; i++)
+            cards[i] = cardAt(tokens, i);
     }
 
-    public synchronized void removeFromPotentialSet(int card) {
-        boolean found = false;
-        for (int i = 0; i < 3 & !found; i++) {
-            if (getPotentialSet()[i] == card) {
-                found = true;
+    public int getPotentialSetSize() {
+        return size(potentialSet.get());
+    }
 
-                for (int j = i; j < 2; j++) {
-                    getPotentialSet()[j] = getPotentialSet()[j + 1];
-                }
-                getPotentialSet()[2] = -1;
-                potentialSetSize--;
-            }
+    /**
+     * Adds a card to the player's potential set, unless it already holds 3 cards.
+     *
+     * @param card - the card id.
+     * @return - true iff the card was added.
+     */
+    public boolean addToPotentialSet(int card) {
+        while (true) {
+            long tokens = potentialSet.get();
+            int size = size(tokens);
+            if (size == 3) return false;
+            if (potentialSet.compareAndSet(tokens, tokens | (card + 1L) << (size * CARD_BITS))) return true;
         }
     }
 
-    public synchronized boolean potentialSetContains(int card) {
-        for (int i = 0; i < 3; i++) {
-            if (getPotentialSet()[i] == card) {
-                return true;
-            }
+    /**
+     * Removes a card from the player's potential set, keeping the order of the other cards.
+     *
+     * @param card - the card id.
+     * @return - true iff the card was in the set.
+     */
+    public boolean removeFromPotentialSet(int card) {
+        while (true) {
+            long tokens = potentialSet.get();
+            int index = indexOf(tokens, card);
+            if (index < 0) return false;
+            int shift = index * CARD_BITS;
+            long lower = tokens & ((1L << shift) - 1);
+            long upper = tokens >>> (shift + CARD_BITS);
+            if (potentialSet.compareAndSet(tokens, lower | upper << shift)) return true;
         }
-        return false;
     }
 
-    public synchronized void clearSet() {
-        for (int i = 0; i < 3; i++) {
-            potentialSet[i] = -1;
-        }
-        potentialSetSize = 0;
+    public boolean potentialSetContains(int card) {
+        return indexOf(potentialSet.get(), card) >= 0;
+    }
+
+    public void clearSet() {
+        potentialSet.set(0);
+    }
+
+    private static int cardAt(long tokens, int index) {
+        return (int) ((tokens >>> (index * CARD_BITS)) & CARD_MASK) - 1;
+    }
+
+    private static int size(long tokens) {
+        if (tokens >>> (2 * CARD_BITS) != 0) return 3;
+        if (tokens >>> CARD_BITS != 0) return 2;
+        return tokens != 0 ? 1 : 0;
+    }
+
+    private static int indexOf(long tokens, int card) {
+        for (int i = 0; i < 3; i++)
+            if (cardAt(tokens, i) == card) return i;
+        return -1;
     }
 
+    /**
+     * Hands the player's tokens to the dealer as a claim and waits for the verdict.
+     */
     public void checkPlayer() {
-        if (!dealer.getPlayersQueue().contains(this)) {
-            dealer.getPlayersQueue().add(this);
+        checkPlayer(Tracer.NONE);
+    }
+
+    /**
+     * Hands the player's tokens to the dealer as a claim and waits for the verdict.
+     *
+     * @param trace - the trace id of the key press that completed the claim.
+     */
+    private void checkPlayer(int trace) {
+        ClaimQueue claims = dealer.getClaims();
+        claimTrace = trace;
+        if (claims.isPending(id)) return; // the dealer may still read the previous claim
+        copyPotentialSet(claim.cards);
+        claim.renew(System.nanoTime(), trace);
+        if (claims.submit(claim)) {
+            env.tracer.stage(trace, Tracer.CLAIM_QUEUED);
+            if (GameEvents.enabled()) {
+                GameEvents.ClaimSubmitted submitted = new GameEvents.ClaimSubmitted();
+                if (submitted.shouldCommit()) {
+                    submitted.player = id;
+                    submitted.cards = Arrays.toString(claim.cards);
+                    submitted.commit();
+                }
+            }
+            long requested = env.locks.request();
             synchronized (this) {
-                try{this.wait();} catch (InterruptedException e){}
+                // the monitor is let go while waiting, so its hold ends where the wait for the verdict starts
+                env.locks.hold("Player:checkPlayer", requested).close();
+                long waiting = env.locks.request();
+                try {
+                    while (claims.isPending(id)) env.clock.waitOn(this);
+                } catch (InterruptedException ignored) {
+                }
+                env.locks.waited("Player:verdict wait", waiting);
             }
         }
     }
 
+    /**
+     * Ends the trace of the last claim, once its outcome is shown.
+     */
+    private void finishClaimTrace() {
+        if (claimTrace == Tracer.NONE) return;
+        env.tracer.stage(claimTrace, Tracer.UI_UPDATED);
+        env.tracer.finish(claimTrace);
+        claimTrace = Tracer.NONE;
+    }
+
     public void notifyPlayer(){
-        synchronized (this){
-            this.notifyAll();
+        long requested = env.locks.request();
+        synchronized (this) {
+            try (LockProfiler.Hold hold = env.locks.hold("Player:notifyPlayer", requested)) {
+                env.clock.wake(this);
+            }
         }
     }
 
@@ -0,0 +1,459 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Util;
+import bguspl.set.UtilCalibration;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+/**
+ * Estimates how dense the legal sets are for a deck (FeatureCount and FeatureSize) and a table size, from many random
+ * deals and simulated games: the probability of a table with no set, the expected number of sets on a table and the
+ * expected length of a game, for tuning the table size and the turn timeout from data.
+ * The samples are taken in parallel and the estimates are printed as they come in. The distributions are cached in
+ * a binary file, and every run adds its samples to the cached ones.
+ */
+public class SetDensity {
+
+    /**
+     * The cache file header.
+     */
+    static final int MAGIC = 0x53455444; // "SETD"
+    static final int VERSION = 1;
+
+    /**
+     * The number of deals (or games) sampled per task.
+     */
+    private static final int CHUNK = 10000;
+
+    /**
+     * A simulated game ends after this many turn timeouts even if the cards still hold a set.
+     */
+    private static final int MAX_TIMEOUTS = 1000;
+
+    /**
+     * The sampled distributions for a deck and a table size.
+     */
+    public static class Distribution {
+
+        public final int featureCount;
+        public final int featureSize;
+        public final int tableSize;
+
+        /**
+         * tables[k] = the number of deals with exactly k sets on the table.
+         */
+        long[] tables = new long[0];
+
+        /**
+         * sets[k] (timeouts[k]) = the number of games in which k sets were collected (k turns timed out).
+         */
+        long[] sets = new long[0];
+        long[] timeouts = new long[0];
+
+        public Distribution(int featureCount, int featureSize, int tableSize) {
+            this.featureCount = featureCount;
+            this.featureSize = featureSize;
+            this.tableSize = tableSize;
+        }
+
+        public long deals() {
+            return total(tables);
+        }
+
+        public long games() {
+            return total(sets);
+        }
+
+        /**
+         * @return - the probability that a random table holds no set.
+         */
+        public double setFreeProbability() {
+            return tables.length == 0 ? Double.NaN : (double) tables[0] / deals();
+        }
+
+        /**
+         * @return - the expected number of sets on a random table.
+         */
+        public double expectedSets() {
+            return mean(tables);
+        }
+
+        /**
+         * @return - the expected number of sets collected in a game.
+         */
+        public double expectedGameSets() {
+            return mean(sets);
+        }
+
+        /**
+         * @return - the expected number of turns in a game that time out with no set on the table.
+         */
+        public double expectedTimeouts() {
+            return mean(timeouts);
+        }
+
+        void addDeal(int setsOnTable) {
+            tables = count(tables, setsOnTable, 1);
+        }
+
+        void addGame(int setsCollected, int turnsTimedOut) {
+            sets = count(sets, setsCollected, 1);
+            timeouts = count(timeouts, turnsTimedOut, 1);
+        }
+
+        /**
+         * Adds the samples of another distribution of the same deck and table size.
+         */
+        void add(Distribution other) {
+            for (int k = 0; k < other.tables.length; k++)
+                tables = count(tables, k, other.tables[k]);
+            for (int k = 0; k < other.sets.length; k++)
+                sets = count(sets, k, other.sets[k]);
+            for (int k = 0; k < other.timeouts.length; k++)
+                timeouts = count(timeouts, k, other.timeouts[k]);
+        }
+
+        boolean sameShape(Distribution other) {
+            return featureCount == other.featureCount && featureSize == other.featureSize
+                    && tableSize == other.tableSize;
+        }
+
+        private static long[] count(long[] histogram, int k, long n) {
+            if (k >= histogram.length) histogram = Arrays.copyOf(histogram, Math.max(k + 1, histogram.length * 2));
+            histogram[k] += n;
+            return histogram;
+        }
+
+        private static long total(long[] histogram) {
+            long total = 0;
+            for (long n : histogram)
+                total += n;
+            return total;
+        }
+
+        private static double mean(long[] histogram) {
+            long total = 0, sum = 0;
+            for (int k = 0; k < histogram.length; k++) {
+                total += histogram[k];
+                sum += k * histogram[k];
+            }
+            return total == 0 ? Double.NaN : (double) sum / total;
+        }
+
+        public void write(OutputStream out) throws IOException {
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeInt(featureCount);
+            data.writeInt(featureSize);
+            data.writeInt(tableSize);
+            for (long[] histogram : new long[][]{tables, sets, timeouts}) {
+                data.writeInt(histogram.length);
+                for (long n : histogram)
+                    data.writeLong(n);
+            }
+            data.flush();
+        }
+
+        public static Distribution read(InputStream in) throws IOException {
+            DataInputStream data = new DataInputStream(in);
+            if (data.readInt() != MAGIC || data.readInt() != VERSION)
+                throw new IOException("not a set density file (or of another version)");
+            Distribution distribution = new Distribution(data.readInt(), data.readInt(), data.readInt());
+            distribution.tables = readHistogram(data);
+            distribution.sets = readHistogram(data);
+            distribution.timeouts = readHistogram(data);
+            return distribution;
+        }
+
+        private static long[] readHistogram(DataInputStream data) throws IOException {
+            long[] histogram = new long[data.readInt()];
+            for (int k = 0; k < histogram.length; k++)
+                histogram[k] = data.readLong();
+            return histogram;
+        }
+    }
+
+    private final Config config;
+
+    /**
+     * Finds the sets (shared by the sampling threads).
+     */
+    private final Util util;
+
+    public SetDensity(Config config, Util util) {
+        this.config = config;
+        this.util = util;
+    }
+
+    /**
+     * Counts the sets among cards.
+     *
+     * @param cards - the cards (the first n).
+     * @param n     - the number of cards.
+     * @param limit - stop counting at this many sets.
+     * @param found - filled with the cards of the first set found (may be null).
+     * @return - the number of sets, up to limit.
+     */
+    int countSets(int[] cards, int n, int limit, int[] found) {
+        List<int[]> sets = util.findSets(new AbstractList<Integer>() {
+            @Override
+            public Integer get(int index) {
+                return cards[index];
+            }
+
+            @Override
+            public int size() {
+                return n;
+            }
+        }, limit);
+        if (!sets.isEmpty() && found != null) System.arraycopy(sets.get(0), 0, found, 0, found.length);
+        return sets.size();
+    }
+
+    /**
+     * Samples random tables.
+     *
+     * @param deals        - the number of tables.
+     * @param random       - the source of the deals.
+     * @param distribution - the distribution to add the samples to.
+     */
+    void sampleDeals(int deals, SplittableRandom random, Distribution distribution) {
+        int[] deck = newDeck();
+        int tableSize = Math.min(config.tableSize, deck.length);
+        for (int deal = 0; deal < deals; deal++) {
+            for (int i = 0; i < tableSize; i++) // a partial shuffle: the first tableSize cards are the table
+                swap(deck, i, i + random.nextInt(deck.length - i));
+            distribution.addDeal(countSets(deck, tableSize, Integer.MAX_VALUE, null));
+        }
+    }
+
+    /**
+     * Simulates whole games: the dealer fills the table, a player collects the first set found, and a turn times out
+     * (the cards are reshuffled into the deck and dealt again) whenever the table holds no set. A game ends when the
+     * table and the deck hold no set.
+     *
+     * @param games        - the number of games.
+     * @param random       - the source of the shuffles.
+     * @param distribution - the distribution to add the samples to.
+     */
+    void sampleGames(int games, SplittableRandom random, Distribution distribution) {
+        int[] cards = newDeck(); // the table is cards[0, onTable), the deck is cards[onTable, left)
+        int[] found = new int[config.featureSize];
+        for (int game = 0; game < games; game++) {
+            int left = cards.length, onTable, sets = 0, timeouts = 0;
+            shuffle(cards, 0, left, random);
+            while (true) {
+                onTable = Math.min(config.tableSize, left);
+                if (countSets(cards, onTable, 1, found) > 0) {
+                    for (int card : found) { // removes the set's cards, moving the last deck cards into their places
+                        int index = indexOf(cards, card, onTable);
+                        cards[index] = cards[--onTable];
+                        cards[onTable] = cards[--left];
+                        cards[left] = card;
+                    }
+                    ++sets;
+                    continue;
+                }
+                if (countSets(cards, left, 1, null) == 0 || ++timeouts == MAX_TIMEOUTS) break;
+                shuffle(cards, 0, left, random);
+            }
+            distribution.addGame(sets, timeouts);
+        }
+    }
+
+    private int[] newDeck() {
+        int[] deck = new int[config.deckSize];
+        for (int card = 0; card < deck.length; card++)
+            deck[card] = card;
+        return deck;
+    }
+
+    private static int indexOf(int[] cards, int card, int n) {
+        for (int i = 0; i < n; i++)
+            if (cards[i] == card) return i;
+        throw new IllegalStateException("card " + card + " is not on the table");
+    }
+
+    private static void shuffle(int[] cards, int from, int to, SplittableRandom random) {
+        for (int i = to - 1; i > from; i--)
+            swap(cards, i, from + random.nextInt(i - from + 1));
+    }
+
+    private static void swap(int[] cards, int i, int j) {
+        int card = cards[i];
+        cards[i] = cards[j];
+        cards[j] = card;
+    }
+
+    /**
+     * Samples deals and games in parallel, adding them to a distribution and printing the estimates so far about
+     * every tenth of the work.
+     *
+     * @param deals        - the number of random tables.
+     * @param games        - the number of simulated games.
+     * @param threads      - the number of sampling threads.
+     * @param seed         - the seed of the samples.
+     * @param distribution - the distribution to add the samples to.
+     * @param progress     - where to print the estimates (may be null).
+     */
+    public void sample(long deals, long games, int threads, long seed, Distribution distribution, PrintStream progress)
+            throws InterruptedException {
+        int dealChunks = (int) ((deals + CHUNK - 1) / CHUNK), gameChunks = (int) ((games + CHUNK - 1) / CHUNK);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CompletionService<Distribution> done = new ExecutorCompletionService<>(pool);
+        SplittableRandom chunkRandoms = new SplittableRandom(seed);
+        for (int chunk = 0; chunk < dealChunks + gameChunks; chunk++) {
+            boolean deal = chunk < dealChunks;
+            long first = (deal ? chunk : chunk - dealChunks) * (long) CHUNK;
+            int count = (int) Math.min(CHUNK, (deal ? deals : games) - first);
+            SplittableRandom random = chunkRandoms.split();
+            done.submit(() -> {
+                Distribution samples = new Distribution(config.featureCount, config.featureSize, config.tableSize);
+                if (deal) sampleDeals(count, random, samples);
+                else sampleGames(count, random, samples);
+                return samples;
+            });
+        }
+        pool.shutdown();
+        try {
+            int chunks = dealChunks + gameChunks;
+            for (int chunk = 1; chunk <= chunks; chunk++) {
+                distribution.add(done.take().get());
+                if (progress != null && (chunk == chunks || chunk % Math.max(1, chunks / 10) == 0))
+                    progress.printf("%3d%%  %s%n", chunk * 100 / chunks, summary(distribution));
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("sampling failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static String summary(Distribution distribution) {
+        StringBuilder sb = new StringBuilder();
+        if (distribution.deals() > 0)
+            sb.append(String.format("%d deals: no set %.3f%%, %.3f sets per table  ", distribution.deals(),
+                    100 * distribution.setFreeProbability(), distribution.expectedSets()));
+        if (distribution.games() > 0)
+            sb.append(String.format("%d games: %.2f sets, %.2f timeouts", distribution.games(),
+                    distribution.expectedGameSets(), distribution.expectedTimeouts()));
+        return sb.toString();
+    }
+
+    /**
+     * @param distribution - the distribution.
+     * @param config       - the game settings (for the turn timeout).
+     * @return - the estimates and the distribution of the number of sets on a table.
+     */
+    public static String report(Distribution distribution, Config config) {
+        StringBuilder sb = new StringBuilder(String.format("FeatureCount %d, FeatureSize %d, table of %d cards%n",
+                distribution.featureCount, distribution.featureSize, distribution.tableSize));
+        sb.append(String.format("%d deals: P(no set on the table) %.3f%%, expected sets on a table %.3f%n",
+                distribution.deals(), 100 * distribution.setFreeProbability(), distribution.expectedSets()));
+        sb.append("sets  tables\n");
+        long deals = Math.max(1, distribution.deals());
+        for (int k = 0; k < distribution.tables.length; k++)
+            if (distribution.tables[k] > 0)
+                sb.append(String.format("%4d  %7.3f%%%n", k, 100.0 * distribution.tables[k] / deals));
+        double timeouts = distribution.expectedTimeouts();
+        sb.append(String.format("%d games: expected %.2f sets collected and %.2f turns timed out per game%n",
+                distribution.games(), distribution.expectedGameSets(), timeouts));
+        if (distribution.games() > 0)
+            sb.append(String.format("expected time lost to timeouts per game: %.0fs (at TurnTimeoutSeconds %.0f)%n",
+                    timeouts * config.turnTimeoutMillis / 1000, config.turnTimeoutMillis / 1000.0));
+        return sb.toString();
+    }
+
+    /**
+     * @param path   - the cache file.
+     * @param config - the game settings.
+     * @return - the cached distribution for the settings' deck and table size (empty if there is none).
+     */
+    static Distribution load(Path path, Config config) throws IOException {
+        Distribution empty = new Distribution(config.featureCount, config.featureSize, config.tableSize);
+        if (!Files.exists(path)) return empty;
+        try (InputStream in = Files.newInputStream(path)) {
+            Distribution cached = Distribution.read(in);
+            return cached.sameShape(empty) ? cached : empty;
+        }
+    }
+
+    static void save(Path path, Distribution distribution) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            distribution.write(out);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @param config - the game settings.
+     * @param cached - the cached distribution the samples are added to.
+     * @return - the seed of a run: the configured seed, moved by the number of cached samples so that a run does not
+     * repeat the samples of the runs before it.
+     */
+    static long seed(Config config, Distribution cached) {
+        return config.seed + cached.deals() + cached.games();
+    }
+
+    /**
+     * @param args - the number of random tables, the number of simulated games, the number of threads (default: the
+     *             number of cores) and the configuration file (default: config.properties).
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.out.println("usage: SetDensity <deals> <games> [threads] [config file]");
+            return;
+        }
+        long deals = Long.parseLong(args[0]);
+        long games = Long.parseLong(args[1]);
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        String filename = args.length > 3 ? args[3] : "config.properties";
+
+        Properties properties = new Properties();
+        if (Files.exists(Paths.get(filename)))
+            try (InputStream is = Files.newInputStream(Paths.get(filename))) {
+                properties.load(is);
+            }
+        Logger logger = Logger.getLogger("SetDensity");
+        Config config = new Config(logger, properties);
+
+        Path cache = Paths.get(String.format("set-density-%dx%d-%d.bin",
+                config.featureCount, config.featureSize, config.tableSize));
+        Distribution distribution = load(cache, config);
+        if (distribution.deals() + distribution.games() > 0)
+            System.out.printf("adding to %d deals and %d games cached in %s%n",
+                    distribution.deals(), distribution.games(), cache);
+
+        long seed = seed(config, distribution);
+        long start = System.nanoTime();
+        Util util = UtilCalibration.select(logger, config).create(config);
+        new SetDensity(config, util).sample(deals, games, threads, seed, distribution, System.out);
+        save(cache, distribution);
+        System.out.print(report(distribution, config));
+        System.out.printf("sampled in %.1fs (seed %d), cached in %s%n", (System.nanoTime() - start) / 1e9,
+                seed, cache);
+    }
+}
@@ -1,17 +1,17 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.LockProfiler;
 
 import java.util.Arrays;
-import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.BitSet;
 
 /**
  * This class contains the data that is visible to the player.
  *
  * @inv slotToCard[x] == y iff cardToSlot[y] == x
  */
+@SuppressWarnings("try") // the sections are never referenced inside their try-with-resources statements
 public class Table {
 
     /**
@@ -20,27 +20,76 @@ public class Table {
     private final Env env;
 
     /**
-     * Mapping between a slot and the card placed in it (null if none).
+     * The value of an empty slot in slotToCard, and of a card that is not on the table in cardToSlot.
      */
-    protected final Integer[] slotToCard; // card per slot (if any)
+    public static final int EMPTY = -1;
 
     /**
-     * Mapping between a card and the slot it is in (null if none).
+     * Mapping between a slot and the card placed in it (EMPTY if none).
      */
-    protected final Integer[] cardToSlot; // slot per card (if any)
+    private final int[] slotToCard; // card per slot (if any)
+
+    /**
+     * Mapping between a card and the slot it is in (EMPTY if none).
+     */
+    private final int[] cardToSlot; // slot per card (if any)
+
+    /**
+     * A bitmap of the cards currently on the table.
+     */
+    private final long[] onTable;
+
+    /**
+     * Per slot, a bitmask of the players that have a token on it.
+     */
+    private final long[][] tokens;
+
+    /**
+     * The number of slots in use (the grid slots, plus any extra slots added while the table holds no legal set).
+     */
+    private volatile int size;
+
+    /**
+     * A critical section on the table's monitor, timed for the lock profiler and as a TableLock event:
+     * <pre>
+     * long requested = env.locks.request();
+     * synchronized (this) {
+     *     try (Section section = enter("Table:operation", requested)) { ... }
+     * }
+     * </pre>
+     */
+    private static class Section implements AutoCloseable {
+
+        /**
+         * The section of a table that is neither profiled nor recorded (so that entering it allocates nothing).
+         */
+        static final Section UNTIMED = new Section(null, null);
+
+        private final LockProfiler.Hold hold;
+        private final GameEvents.TableLock held;
+
+        Section(LockProfiler.Hold hold, GameEvents.TableLock held) {
+            this.hold = hold;
+            this.held = held;
+        }
+
+        @Override
+        public void close() {
+            if (this == UNTIMED) return;
+            GameEvents.releaseTable(held);
+            hold.close();
+        }
+    }
 
     /**
      * Constructor for testing.
      *
      * @param env        - the game environment objects.
-     * @param slotToCard - mapping between a slot and the card placed in it (null if none).
-     * @param cardToSlot - mapping between a card and the slot it is in (null if none).
+     * @param slotToCard - mapping between a slot and the card placed in it (EMPTY if none).
+     * @param cardToSlot - mapping between a card and the slot it is in (EMPTY if none).
      */
-    public Table(Env env, Integer[] slotToCard, Integer[] cardToSlot) {
-
-        this.env = env;
-        this.slotToCard = slotToCard;
-        this.cardToSlot = cardToSlot;
+    public Table(Env env, int[] slotToCard, int[] cardToSlot) {
+        this(env, slotToCard, cardToSlot, slotToCard.length);
     }
 
     /**
@@ -50,20 +99,39 @@ public class Table {
      */
     public Table(Env env) {
 
-        this(env, new Integer[env.config.tableSize], new Integer[env.config.deckSize]);
+        this(env, emptyArray(env.config.maxTableSize), emptyArray(env.config.deckSize), env.config.tableSize);
+    }
+
+    private Table(Env env, int[] slotToCard, int[] cardToSlot, int size) {
+
+        this.env = env;
+        this.slotToCard = slotToCard;
+        this.cardToSlot = cardToSlot;
+        this.onTable = new long[(cardToSlot.length + 63) / 64];
+        for (int card : slotToCard)
+            if (card != EMPTY) onTable[card >>> 6] |= 1L << card;
+        this.tokens = new long[slotToCard.length][(env.config.players + 63) / 64];
+        this.size = size;
     }
 
     /**
-     * This method prints all possible legal sets of cards that are currently on the table.
+     * @param length - the array length.
+     * @return - a new array filled with EMPTY.
      */
-    public void hints() {
-        List<Integer> deck = Arrays.stream(slotToCard).filter(Objects::nonNull).collect(Collectors.toList());
-        env.util.findSets(deck, Integer.MAX_VALUE).forEach(set -> {
-            StringBuilder sb = new StringBuilder().append("Hint: Set found: ");
-            List<Integer> slots = Arrays.stream(set).mapToObj(card -> cardToSlot[card]).sorted().collect(Collectors.toList());
-            int[][] features = env.util.cardsToFeatures(set);
-            System.out.println(sb.append("slots: ").append(slots).append(" features: ").append(Arrays.deepToString(features)));
-        });
+    public static int[] emptyArray(int length) {
+        int[] array = new int[length];
+        Arrays.fill(array, EMPTY);
+        return array;
+    }
+
+    /**
+     * @param site      - the monitor and call site, e.g. "Table:placeCard".
+     * @param requested - the time returned by env.locks.request before entering the monitor.
+     * @return - the section just entered, to close right before leaving the monitor.
+     */
+    private Section enter(String site, long requested) {
+        if (!env.locks.enabled() && !GameEvents.enabled()) return Section.UNTIMED;
+        return new Section(env.locks.hold(site, requested), GameEvents.holdTable(site));
     }
 
     /**
@@ -71,12 +139,17 @@ public class Table {
      *
      * @return - the number of cards on the table.
      */
-    public synchronized int countCards() {
-        int cards = 0;
-        for (Integer card : slotToCard)
-            if (card != null)
-                ++cards;
-        return cards;
+    public int countCards() {
+        long requested = env.locks.request();
+        synchronized (this) {
+            try (Section section = enter("Table:countCards", requested)) {
+                int cards = 0;
+                for (int card : slotToCard)
+                    if (card != EMPTY)
+                        ++cards;
+                return cards;
+            }
+        }
     }
 
     /**
@@ -86,16 +159,24 @@ public class Table {
      * @param slot - the slot in which the card should be placed.
      * @post - the card placed is on the table, in the assigned slot.
      */
-    public synchronized void placeCard(int card, int slot) {
+    public void placeCard(int card, int slot) {
+        // delay outside the lock, so that players are not blocked (and virtual time can pass) meanwhile
         try {
-            Thread.sleep(env.config.tableDelayMillis);
+            env.clock.sleep(env.config.tableDelayMillis);
         } catch (InterruptedException ignored) {
         }
 
-        cardToSlot[card] = slot;
-        slotToCard[slot] = card;
+        long requested = env.locks.request();
+        synchronized (this) {
+            try (Section section = enter("Table:placeCard", requested)) {
+                cardToSlot[card] = slot;
+                slotToCard[slot] = card;
+                onTable[card >>> 6] |= 1L << card;
 
-        env.ui.placeCard(card, slot);
+                env.ui.placeCard(card, slot);
+                env.journal.cardPlaced(card, slot);
+            }
+        }
     }
 
     /**
@@ -103,17 +184,23 @@ public class Table {
      *
      * @param slot - the slot from which to remove the card.
      */
-    public synchronized void removeCard(int slot) {
+    public void removeCard(int slot) {
         try {
-            Thread.sleep(env.config.tableDelayMillis);
+            env.clock.sleep(env.config.tableDelayMillis);
         } catch (InterruptedException ignored) {
         }
-        if (slotToCard[slot] != null) {
-            int card = slotToCard[slot];
-            slotToCard[slot] = null;
-            cardToSlot[card] = null;
-            env.ui.removeCard(slot);
-
+        long requested = env.locks.request();
+        synchronized (this) {
+            try (Section section = enter("Table:removeCard", requested)) {
+                int card = slotToCard[slot];
+                if (card != EMPTY) {
+                    slotToCard[slot] = EMPTY;
+                    cardToSlot[card] = EMPTY;
+                    onTable[card >>> 6] &= ~(1L << card);
+                    env.ui.removeCard(slot);
+                    env.journal.cardRemoved(card, slot);
+                }
+            }
         }
     }
 
@@ -123,8 +210,38 @@ public class Table {
      * @param player - the player the token belongs to.
      * @param slot   - the slot on which to place the token.
      */
-    public synchronized void placeToken(int player, int slot) {
-        env.ui.placeToken(player, slot);
+    public void placeToken(int player, int slot) {
+        long requested = env.locks.request();
+        synchronized (this) {
+            try (Section section = enter("Table:placeToken", requested)) {
+                tokens[slot][player >>> 6] |= 1L << player;
+                env.ui.placeToken(player, slot);
+                env.journal.tokenPlaced(player, slot);
+            }
+        }
+    }
+
+    /**
+     * Places a player token on a slot, if the slot still holds the card the player saw there. A card removed from the
+     * table is removed before the dealer clears the tokens on its slot, so a token either lands while the card is
+     * still there (and is cleared with it) or is not placed at all.
+     *
+     * @param player - the player the token belongs to.
+     * @param slot   - the slot on which to place the token.
+     * @param card   - the card the player saw in the slot.
+     * @return - true iff the token was placed.
+     */
+    public boolean placeToken(int player, int slot, int card) {
+        long requested = env.locks.request();
+        synchronized (this) {
+            try (Section section = enter("Table:placeToken", requested)) {
+                if (slotToCard[slot] != card) return false;
+                tokens[slot][player >>> 6] |= 1L << player;
+                env.ui.placeToken(player, slot);
+                env.journal.tokenPlaced(player, slot);
+                return true;
+            }
+        }
     }
 
     /**
@@ -134,17 +251,137 @@ public class Table {
      * @param slot   - the slot from which to remove the token.
      * @return - true iff a token was successfully removed.
      */
-    public synchronized boolean removeToken(int player, int slot) {
-        // TODO implement
-        env.ui.removeToken(player, slot);
-        return true;
+    public boolean removeToken(int player, int slot) {
+        long requested = env.locks.request();
+        synchronized (this) {
+            try (Section section = enter("Table:removeToken", requested)) {
+                long bit = 1L << player;
+                if ((tokens[slot][player >>> 6] & bit) == 0) return false;
+                tokens[slot][player >>> 6] &= ~bit;
+                env.ui.removeToken(player, slot);
+                env.journal.tokenRemoved(player, slot);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @param player - the player id.
+     * @param slot   - the slot.
+     * @return - true iff the player has a token on the slot.
+     */
+    public boolean hasToken(int player, int slot) {
+        long requested = env.locks.request();
+        synchronized (this) {
+            try (Section section = enter("Table:hasToken", requested)) {
+                return (tokens[slot][player >>> 6] & (1L << player)) != 0;
+            }
+        }
+    }
+
+    /**
+     * Finds the next player that has a token on a slot, for iterating over a slot's tokens:
+     * for (int p = nextTokenOwner(slot, 0); p >= 0; p = nextTokenOwner(slot, p + 1))
+     *
+     * @param slot       - the slot.
+     * @param fromPlayer - the player id to start searching from (inclusive).
+     * @return - the lowest player id >= fromPlayer with a token on the slot, or -1 if there is none.
+     */
+    public int nextTokenOwner(int slot, int fromPlayer) {
+        long requested = env.locks.request();
+        synchronized (this) {
+            try (Section section = enter("Table:nextTokenOwner", requested)) {
+                long[] owners = tokens[slot];
+                int word = fromPlayer >>> 6;
+                if (word >= owners.length) return -1;
+                long bits = owners[word] & (-1L << fromPlayer);
+                while (bits == 0) {
+                    if (++word == owners.length) return -1;
+                    bits = owners[word];
+                }
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
+            }
+        }
+    }
+
+    /**
+     * @param slot - the slot.
+     * @return - the card in the slot, or EMPTY if there is none.
+     */
+    public int cardAt(int slot) {
+        return slotToCard[slot];
+    }
+
+    /**
+     * @param card - the card id.
+     * @return - the slot the card is in, or EMPTY if it is not on the table.
+     */
+    public int slotOf(int card) {
+        return cardToSlot[card];
+    }
+
+    /**
+     * @param card - the card id.
+     * @return - true iff the card is on the table.
+     */
+    public boolean isOnTable(int card) {
+        return (onTable[card >>> 6] & (1L << card)) != 0;
+    }
+
+    /**
+     * @return - a bitmap of the cards on the table (a copy), e.g. as the key of a cache of the table's legal sets.
+     */
+    public BitSet cards() {
+        long requested = env.locks.request();
+        synchronized (this) {
+            try (Section section = enter("Table:cards", requested)) {
+                return BitSet.valueOf(onTable);
+            }
+        }
     }
 
-    public synchronized Integer[] getSlotToCard() {
-        return slotToCard;
+    /**
+     * @return - the number of slots in use on the table.
+     */
+    public int size() {
+        return size;
     }
 
-    public synchronized Integer[] getCardToSlot() {
-        return cardToSlot;
+    /**
+     * @return - the maximum number of slots on the table.
+     */
+    public int capacity() {
+        return slotToCard.length;
+    }
+
+    /**
+     * Changes the number of slots in use, for adding extra cards to the table or compacting it back.
+     *
+     * @param slots - the number of slots.
+     * @pre - the slots being removed are empty.
+     */
+    public void resize(int slots) {
+        if (slots < 0 || slots > capacity())
+            throw new IllegalArgumentException("table size " + slots + " out of range 0-" + capacity());
+        long requested = env.locks.request();
+        synchronized (this) {
+            try (Section section = enter("Table:resize", requested)) {
+                for (int slot = slots; slot < size; slot++)
+                    if (slotToCard[slot] != EMPTY) throw new IllegalStateException("slot " + slot + " is not empty");
+                size = slots;
+            }
+        }
+    }
+
+    /**
+     * @return - a copy of the mapping between the slots and the cards placed in them (EMPTY if none).
+     */
+    public int[] getSlotToCard() {
+        long requested = env.locks.request();
+        synchronized (this) {
+            try (Section section = enter("Table:getSlotToCard", requested)) {
+                return slotToCard.clone();
+            }
+        }
     }
 }
@@ -0,0 +1,266 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UserInterface;
+import bguspl.set.Util;
+import bguspl.set.UtilCalibration;
+import bguspl.set.UtilEngine;
+import bguspl.set.VirtualClock;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Plays many complete computer player games in parallel, for evaluating game settings.
+ * Every game has its own environment (seeded from the tournament seed, with virtual time and no user interface),
+ * so games are independent and run as fast as the players' threads can play.
+ */
+public class Tournament {
+
+    /**
+     * The result of a game.
+     */
+    public static class GameResult {
+
+        public final long seed;
+        public final int[] scores;
+        public final int[] winners;
+
+        /**
+         * The game length, in (virtual) milliseconds.
+         */
+        public final long millis;
+
+        GameResult(long seed, int[] scores, int[] winners, long millis) {
+            this.seed = seed;
+            this.scores = scores;
+            this.winners = winners;
+            this.millis = millis;
+        }
+    }
+
+    private final Logger logger;
+    private final Properties properties;
+    private final long seed;
+
+    /**
+     * The util engine of all games (calibrated once, for the tournament's deck).
+     */
+    private final UtilEngine engine;
+
+    /**
+     * @param logger     - the logger (shared by all games).
+     * @param properties - the game settings (all players are played by the computer).
+     */
+    public Tournament(Logger logger, Properties properties) {
+        this.logger = logger;
+        this.properties = new Properties();
+        this.properties.putAll(properties);
+        int players = Integer.parseInt(properties.getProperty("HumanPlayers", "2"))
+                + Integer.parseInt(properties.getProperty("ComputerPlayers", "0"));
+        this.properties.setProperty("HumanPlayers", "0");
+        this.properties.setProperty("ComputerPlayers", Integer.toString(players));
+        this.properties.setProperty("VirtualTime", "true");
+        this.properties.setProperty("Hints", "false");
+        this.properties.setProperty("JournalFile", "");
+        String seedString = properties.getProperty("Seed", "").trim();
+        this.seed = seedString.isEmpty() ? ThreadLocalRandom.current().nextLong() : Long.parseLong(seedString);
+        this.engine = UtilCalibration.select(logger, new Config(logger, this.properties));
+    }
+
+    /**
+     * Plays the games.
+     *
+     * @param games   - the number of games.
+     * @param threads - the number of games played at the same time.
+     * @return - the results, in game order.
+     */
+    public List<GameResult> play(int games, int threads) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        AtomicInteger done = new AtomicInteger();
+        List<Future<GameResult>> futures = new ArrayList<>(games);
+        for (int game = 0; game < games; game++) {
+            long gameSeed = seed + game * 0x9E3779B97F4A7C15L; // spreads the games' random streams apart
+            futures.add(pool.submit(() -> {
+                GameResult result = playGame(gameSeed);
+                int count = done.incrementAndGet();
+                if (count % Math.max(1, games / 10) == 0) logger.warning(count + "/" + games + " games played");
+                return result;
+            }));
+        }
+        pool.shutdown();
+        List<GameResult> results = new ArrayList<>(games);
+        try {
+            for (Future<GameResult> future : futures)
+                results.add(future.get());
+        } catch (ExecutionException e) {
+            pool.shutdownNow();
+            throw new IllegalStateException("game failed", e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * Plays a game to its end.
+     *
+     * @param gameSeed - the game's seed.
+     * @return - the result.
+     */
+    public GameResult playGame(long gameSeed) throws InterruptedException {
+        Properties gameProperties = new Properties();
+        gameProperties.putAll(properties);
+        gameProperties.setProperty("Seed", Long.toString(gameSeed));
+        Config config = new Config(logger, gameProperties);
+        Util util = engine.create(config);
+        ResultInterface ui = new ResultInterface();
+        VirtualClock clock = new VirtualClock();
+        Env env = new Env(logger, config, ui, util).withClock(clock);
+
+        Player[] players = new Player[config.players];
+        Table table = new Table(env);
+        Dealer dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, false);
+
+        Thread dealerThread = new Thread(dealer, "dealer-" + Long.toHexString(gameSeed));
+        dealerThread.start();
+        dealerThread.join();
+        for (Player player : players)
+            player.terminate();
+
+        int[] scores = new int[players.length];
+        for (int i = 0; i < players.length; i++)
+            scores[i] = players[i].score();
+        return new GameResult(gameSeed, scores, ui.winners, clock.millis());
+    }
+
+    /**
+     * @param results - the game results.
+     * @return - the win rate per player, the score distribution and the game length percentiles.
+     */
+    public static String report(List<GameResult> results) {
+        StringBuilder sb = new StringBuilder();
+        if (results.isEmpty()) return sb.append("no games played\n").toString();
+        int players = results.get(0).scores.length;
+
+        // a tie counts as a fraction of a win for each winner
+        double[] wins = new double[players];
+        long[] points = new long[players];
+        TreeMap<Integer, Integer> scores = new TreeMap<>();
+        long[] lengths = new long[results.size()];
+        for (int game = 0; game < results.size(); game++) {
+            GameResult result = results.get(game);
+            for (int winner : result.winners)
+                wins[winner] += 1.0 / result.winners.length;
+            for (int player = 0; player < players; player++) {
+                points[player] += result.scores[player];
+                scores.merge(result.scores[player], 1, Integer::sum);
+            }
+            lengths[game] = result.millis;
+        }
+
+        sb.append(results.size()).append(" games\n\nplayer  win rate  avg score\n");
+        for (int player = 0; player < players; player++)
+            sb.append(String.format("%6d  %7.2f%%  %9.2f%n", player + 1, 100.0 * wins[player] / results.size(),
+                    (double) points[player] / results.size()));
+
+        sb.append("\nscore  players\n");
+        scores.forEach((score, count) -> sb.append(String.format("%5d  %7d%n", score, count)));
+
+        Arrays.sort(lengths);
+        sb.append("\ngame length (s): ");
+        for (double percentile : new double[]{0.5, 0.9, 0.99})
+            sb.append(String.format("p%.0f %.1f  ", percentile * 100,
+                    lengths[(int) Math.min(lengths.length - 1, Math.ceil(percentile * lengths.length) - 1)] / 1000.0));
+        return sb.append(String.format("max %.1f%n", lengths[lengths.length - 1] / 1000.0)).toString();
+    }
+
+    /**
+     * A user interface that shows nothing, only keeping the announced winners.
+     */
+    private static class ResultInterface implements UserInterface {
+
+        volatile int[] winners = new int[0];
+
+        @Override
+        public void placeCard(int card, int slot) {}
+
+        @Override
+        public void removeCard(int slot) {}
+
+        @Override
+        public void placeToken(int player, int slot) {}
+
+        @Override
+        public void removeTokens() {}
+
+        @Override
+        public void removeTokens(int slot) {}
+
+        @Override
+        public void removeToken(int player, int slot) {}
+
+        @Override
+        public void setCountdown(long millies, boolean warn) {}
+
+        @Override
+        public void setElapsed(long millies) {}
+
+        @Override
+        public void setFreeze(int player, long millies) {}
+
+        @Override
+        public void setScore(int player, int score) {}
+
+        @Override
+        public void announceWinner(int[] players) {
+            winners = players.clone();
+        }
+
+        @Override
+        public void dispose() {}
+    }
+
+    /**
+     * @param args - the number of games, the number of games played at the same time (default: the number of
+     *             cores) and the configuration file (default: config.properties).
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.out.println("usage: Tournament <games> [parallel games] [config file]");
+            return;
+        }
+        int games = Integer.parseInt(args[0]);
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        String filename = args.length > 2 ? args[2] : "config.properties";
+
+        Logger logger = Logger.getLogger("Tournament");
+        Properties properties = new Properties();
+        if (Files.exists(Paths.get(filename)))
+            try (InputStream is = Files.newInputStream(Paths.get(filename))) {
+                properties.load(is);
+            }
+        properties.setProperty("LogLevel", "WARNING"); // thousands of games would flood the log
+
+        Tournament tournament = new Tournament(logger, properties);
+        long start = System.nanoTime();
+        List<GameResult> results = tournament.play(games, threads);
+        System.out.print(report(results));
+        System.out.printf("played in %.1fs (seed %d)%n", (System.nanoTime() - start) / 1e9, tournament.seed);
+    }
+}
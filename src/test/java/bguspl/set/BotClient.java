@@ -0,0 +1,155 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Random;
+
+/**
+ * A load testing client for the game server: opens many connections from a single selector thread. The first
+ * connections try to join as players and press random slots, the rest join as spectators.
+ */
+public class BotClient {
+
+    /**
+     * A bot connection.
+     */
+    private static class Bot {
+
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(GameServer.FRAME_SIZE * 1024);
+        final ByteBuffer out = ByteBuffer.allocate(GameServer.FRAME_SIZE * 64);
+        int player = -1;
+        int tableSize;
+
+        Bot(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * The totals of a run.
+     */
+    public static class Result {
+
+        public final int connections;
+        public final int joinedPlayers;
+        public final long presses;
+        public final long frames;
+        public final double seconds;
+
+        Result(int connections, int joinedPlayers, long presses, long frames, double seconds) {
+            this.connections = connections;
+            this.joinedPlayers = joinedPlayers;
+            this.presses = presses;
+            this.frames = frames;
+            this.seconds = seconds;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d connections (%d players): %d presses sent (%.0f/s), %d frames received (%.0f/s)",
+                    connections, joinedPlayers, presses, presses / seconds, frames, frames / seconds);
+        }
+    }
+
+    /**
+     * @param args - host, port, connections, players (the first connections that try to join as players),
+     *             seconds to run, presses per second per player.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 6) {
+            System.out.println("usage: BotClient <host> <port> <connections> <players> <seconds> <presses per second>");
+            return;
+        }
+        InetSocketAddress address = new InetSocketAddress(args[0], Integer.parseInt(args[1]));
+        System.out.println(run(address, Integer.parseInt(args[2]), Integer.parseInt(args[3]),
+                Long.parseLong(args[4]) * 1000, Integer.parseInt(args[5])));
+    }
+
+    /**
+     * Runs the bots against a server.
+     *
+     * @param address          - the server's address.
+     * @param connections      - the number of connections.
+     * @param players          - the number of first connections that try to join as players.
+     * @param millis           - the time to run.
+     * @param pressesPerSecond - the key presses per second of each player.
+     * @return - the totals.
+     */
+    public static Result run(InetSocketAddress address, int connections, int players, long millis,
+                             int pressesPerSecond) throws IOException {
+        long runNanos = millis * 1000000;
+        long pressNanos = 1000000000L / Math.max(1, pressesPerSecond);
+
+        Selector selector = Selector.open();
+        Bot[] bots = new Bot[connections];
+        for (int i = 0; i < connections; i++) {
+            SocketChannel channel = SocketChannel.open(address);
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            bots[i] = new Bot(channel);
+            bots[i].out.put(GameServer.JOIN).putInt(i < players ? i : -1).putInt(0);
+            channel.register(selector, SelectionKey.OP_READ | SelectionKey.OP_WRITE, bots[i]);
+        }
+
+        Random random = new Random(0);
+        long frames = 0, presses = 0;
+        long start = System.nanoTime(), nextPress = start;
+        while (System.nanoTime() - start < runNanos) {
+            selector.select(Math.max(1, (nextPress - System.nanoTime()) / 1000000));
+            for (SelectionKey key : selector.selectedKeys()) {
+                Bot bot = (Bot) key.attachment();
+                if (key.isReadable()) {
+                    if (bot.channel.read(bot.in) < 0) {
+                        key.cancel();
+                        continue;
+                    }
+                    bot.in.flip();
+                    while (bot.in.remaining() >= GameServer.FRAME_SIZE) {
+                        byte type = bot.in.get();
+                        int a = bot.in.getInt(), b = bot.in.getInt();
+                        if (type == GameServer.WELCOME) {
+                            bot.player = a;
+                            bot.tableSize = b;
+                        }
+                        ++frames;
+                    }
+                    bot.in.compact();
+                }
+                if (key.isValid() && key.isWritable()) flush(key, bot);
+            }
+            selector.selectedKeys().clear();
+
+            if (System.nanoTime() >= nextPress) {
+                nextPress += pressNanos;
+                for (Bot bot : bots) {
+                    if (bot.player < 0 || bot.out.remaining() < GameServer.FRAME_SIZE) continue;
+                    bot.out.put(GameServer.PRESS).putInt(random.nextInt(bot.tableSize)).putInt(0);
+                    ++presses;
+                    SelectionKey key = bot.channel.keyFor(selector);
+                    if (key != null && key.isValid()) flush(key, bot);
+                }
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        int joined = 0;
+        for (Bot bot : bots) {
+            if (bot.player >= 0) ++joined;
+            bot.channel.close();
+        }
+        selector.close();
+        return new Result(connections, joined, presses, frames, seconds);
+    }
+
+    private static void flush(SelectionKey key, Bot bot) throws IOException {
+        bot.out.flip();
+        bot.channel.write(bot.out);
+        bot.out.compact();
+        key.interestOps(bot.out.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+}
@@ -0,0 +1,147 @@
+package bguspl.set;
+
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class GameServerTest {
+
+    private GameServer server;
+    private Player[] players;
+    private Table table;
+    private UserInterface ui;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Properties properties = new Properties();
+        properties.put("LogLevel", "OFF");
+        properties.put("TableDelaySeconds", "0");
+        properties.put("HumanPlayers", "2");
+        properties.put("ComputerPlayers", "0");
+        Logger logger = Logger.getAnonymousLogger();
+        Config config = new Config(logger, properties);
+        players = new Player[]{mock(Player.class), mock(Player.class)};
+        when(players[1].score()).thenReturn(4);
+        server = new GameServer(logger, config, players);
+        ui = new UserInterfaceRemote(null, server);
+        table = new Table(new Env(logger, config, ui, new UtilImpl(config)));
+        server.start(table);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    /**
+     * A blocking test client.
+     */
+    private class Client implements AutoCloseable {
+
+        final Socket socket = new Socket();
+        final DataInputStream in;
+        final DataOutputStream out;
+
+        Client() throws IOException {
+            socket.connect(new InetSocketAddress("localhost", server.port()));
+            socket.setSoTimeout(5000);
+            in = new DataInputStream(socket.getInputStream());
+            out = new DataOutputStream(socket.getOutputStream());
+        }
+
+        void send(byte type, int a) throws IOException {
+            out.writeByte(type);
+            out.writeInt(a);
+            out.writeInt(0);
+            out.flush();
+        }
+
+        void expect(byte type, int a, int b) throws IOException {
+            assertEquals(type + " " + a + " " + b, in.readByte() + " " + in.readInt() + " " + in.readInt());
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    @Test
+    void joiningClientGetsTheSnapshotThenTheUpdates() throws IOException {
+        table.placeCard(5, 0);
+        table.placeToken(1, 0);
+        table.placeCard(9, 2);
+
+        try (Client client = new Client()) {
+            client.send(GameServer.JOIN, 0);
+            client.expect(GameServer.WELCOME, 0, table.size());
+            client.expect(GameServer.CARD_PLACED, 5, 0);
+            client.expect(GameServer.TOKEN_PLACED, 1, 0);
+            client.expect(GameServer.CARD_PLACED, 9, 2);
+            client.expect(GameServer.SCORE, 0, 0);
+            client.expect(GameServer.SCORE, 1, 4);
+
+            // the updates made before joining are not sent again
+            table.removeCard(2);
+            ui.setScore(1, 5);
+            client.expect(GameServer.CARD_REMOVED, 2, 0);
+            client.expect(GameServer.SCORE, 1, 5);
+        }
+    }
+
+    @Test
+    void secondClientOfAPlayerSpectates() throws IOException {
+        try (Client player = new Client(); Client spectator = new Client()) {
+            player.send(GameServer.JOIN, 1);
+            player.expect(GameServer.WELCOME, 1, table.size());
+            spectator.send(GameServer.JOIN, 1);
+            spectator.expect(GameServer.WELCOME, -1, table.size());
+        }
+    }
+
+    @Test
+    void pressesAreReadAcrossSplitFrames() throws IOException {
+        try (Client client = new Client()) {
+            client.send(GameServer.JOIN, 0);
+            client.expect(GameServer.WELCOME, 0, table.size());
+            // a frame split across two writes, then an out of range slot
+            client.out.writeByte(GameServer.PRESS);
+            client.out.writeShort(0);
+            client.out.flush();
+            client.out.writeShort(3);
+            client.out.writeInt(0);
+            client.send(GameServer.PRESS, table.size());
+            client.send(GameServer.PRESS, 7);
+
+            verify(players[0], timeout(5000)).keyPressed(7);
+            verify(players[0]).keyPressed(3);
+            verify(players[0], never()).keyPressed(table.size());
+            verify(players[1], never()).keyPressed(anyInt());
+        }
+    }
+
+    @Test
+    void botsJoinAndPress() throws IOException {
+        BotClient.Result result = BotClient.run(new InetSocketAddress("localhost", server.port()), 3, 1, 500, 50);
+
+        assertEquals(1, result.joinedPlayers);
+        assertTrue(result.presses > 0, result.toString());
+        assertTrue(result.frames >= 3, result.toString());
+        verify(players[0], timeout(5000).atLeastOnce()).keyPressed(anyInt());
+        verify(players[1], never()).keyPressed(anyInt());
+    }
+}
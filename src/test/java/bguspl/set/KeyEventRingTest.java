@@ -0,0 +1,92 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyEventRingTest {
+
+    @Test
+    void newRingIsEmpty() {
+        KeyEventRing ring = new KeyEventRing(4);
+        assertTrue(ring.isEmpty());
+        assertTrue(ring.offer(1, 10));
+        assertFalse(ring.isEmpty());
+        ring.remove();
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test
+    void fullRingDropsEvents() {
+        KeyEventRing ring = new KeyEventRing(4);
+        for (int i = 0; i < 4; i++)
+            assertTrue(ring.offer(i, i));
+        assertFalse(ring.offer(4, 4));
+
+        ring.remove();
+        assertTrue(ring.offer(5, 5));
+        assertFalse(ring.offer(6, 6));
+        assertEquals(1, ring.peekEvent());
+    }
+
+    @Test
+    void capacityIsRoundedUpToAPowerOfTwo() {
+        KeyEventRing ring = new KeyEventRing(5);
+        for (int i = 0; i < 8; i++)
+            assertTrue(ring.offer(i, i));
+        assertFalse(ring.offer(8, 8));
+    }
+
+    @Test
+    void eventsWrapAroundInOrder() {
+        KeyEventRing ring = new KeyEventRing(4);
+        int next = 0;
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 3; i++)
+                assertTrue(ring.offer(round * 3 + i, 100L + round * 3 + i));
+            for (int i = 0; i < 3; i++, next++) {
+                assertEquals(next, ring.peekEvent());
+                assertEquals(100L + next, ring.peekStamp());
+                ring.remove();
+            }
+            assertTrue(ring.isEmpty());
+        }
+    }
+
+    @Test
+    void parkedConsumerGetsEveryEvent() throws InterruptedException {
+        int events = 10000;
+        KeyEventRing ring = new KeyEventRing(4);
+        long[] sum = new long[1];
+        int[] consumed = new int[1];
+        // consumes like the input thread does
+        Thread consumer = new Thread(() -> {
+            int expected = 0;
+            while (expected < events) {
+                if (ring.isEmpty()) {
+                    LockSupport.park(this);
+                    continue;
+                }
+                if (ring.peekEvent() != expected) break;
+                sum[0] += ring.peekStamp();
+                ring.remove();
+                ++expected;
+            }
+            consumed[0] = expected;
+        });
+        consumer.start();
+
+        for (int i = 0; i < events; i++) {
+            while (!ring.offer(i, i))
+                LockSupport.unpark(consumer);
+            LockSupport.unpark(consumer);
+        }
+        consumer.join(10000);
+
+        assertFalse(consumer.isAlive());
+        assertEquals(events, consumed[0]);
+        assertEquals((long) events * (events - 1) / 2, sum[0]);
+    }
+}
@@ -0,0 +1,34 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LockProfilerTest {
+
+    @Test
+    void recordsPerMonitorAndCallSite() {
+        LockProfiler locks = LockProfiler.create(true);
+        Object monitor = new Object();
+        for (int i = 0; i < 3; i++) {
+            long requested = locks.request();
+            synchronized (monitor) {
+                locks.hold("Table:placeToken", requested).close();
+            }
+        }
+        locks.waited("Player:verdict wait", locks.request());
+
+        String report = locks.report();
+        assertTrue(report.contains("Table:placeToken"), report);
+        assertTrue(report.matches("(?s).*\\n  Table:placeToken\\s+3 .*"), report);
+        assertTrue(report.matches("(?s).*\\nPlayer\\s+1 .*"), report);
+    }
+
+    @Test
+    void disabledRecordsNothing() {
+        LockProfiler locks = LockProfiler.disabled();
+        assertEquals(0, locks.request());
+        locks.hold("Table:placeToken", 0).close();
+        assertFalse(locks.report().contains("Table"));
+    }
+}
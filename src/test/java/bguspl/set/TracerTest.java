@@ -0,0 +1,72 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TracerTest {
+
+    /**
+     * @return - the report line of a stage, split into its columns.
+     */
+    private static String[] line(String report, String stage) {
+        for (String line : report.split("\n"))
+            if (line.startsWith(stage + ",")) return line.split(",");
+        throw new AssertionError("no " + stage + " in " + report);
+    }
+
+    @Test
+    void disabledTracerTracesNothing() {
+        Tracer tracer = Tracer.create("");
+        assertFalse(tracer.enabled());
+        int id = tracer.begin(System.nanoTime());
+        assertEquals(Tracer.NONE, id);
+        tracer.stage(id, Tracer.ENQUEUED);
+        tracer.finish(id);
+        assertEquals("0", line(tracer.report(), "enqueued")[1]);
+    }
+
+    @Test
+    void stagesReachedAreCountedFromThePreviousStage() {
+        Tracer tracer = Tracer.create("trace.csv");
+        for (int i = 0; i < 3; i++) {
+            int id = tracer.begin(System.nanoTime() - 2000000); // pressed 2ms ago
+            tracer.stage(id, Tracer.ENQUEUED);
+            tracer.stage(id, Tracer.CONSUMED);
+            if (i == 0) tracer.stage(id, Tracer.UI_UPDATED); // e.g. a claim that skipped no stage on the way
+            tracer.finish(id);
+        }
+
+        String report = tracer.report();
+        assertTrue(report.startsWith("stage,count,avg_us,p50_us,p99_us,max_us\n"), report);
+        String[] enqueued = line(report, "enqueued");
+        assertEquals("3", enqueued[1]);
+        assertTrue(Long.parseLong(enqueued[2]) >= 2000, report);
+        assertTrue(Long.parseLong(enqueued[5]) >= 2000, report);
+        // the percentiles are histogram bucket limits, so they bound the latencies from above
+        assertTrue(Long.parseLong(enqueued[4]) >= Long.parseLong(enqueued[3]), report);
+        assertTrue(Long.parseLong(enqueued[4]) * 2 >= 2000, report);
+        assertEquals("3", line(report, "consumed")[1]);
+        assertEquals("0", line(report, "verdict")[1]);
+        assertEquals("1", line(report, "ui updated")[1]);
+        assertTrue(Long.parseLong(line(report, "ui updated")[5]) < 2000, report);
+    }
+
+    @Test
+    void reportIsExported() throws IOException {
+        File file = File.createTempFile("trace", ".csv");
+        try {
+            Tracer tracer = Tracer.create(file.getPath());
+            tracer.finish(tracer.begin(System.nanoTime()));
+            tracer.export();
+            assertEquals(tracer.report(), new String(Files.readAllBytes(file.toPath())));
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class UserInterfaceLazyTest {
+
+    @Mock
+    private UserInterface ui;
+
+    @Test
+    void replaysUpdatesMadeBeforeTheUserInterfaceIsReady() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        UserInterfaceLazy lazy = new UserInterfaceLazy(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+            return ui;
+        });
+        lazy.placeCard(7, 0);
+        lazy.placeToken(1, 0);
+        assertFalse(lazy.ready());
+
+        release.countDown();
+        while (!lazy.ready()) Thread.sleep(1);
+        lazy.setScore(1, 3);
+
+        InOrder order = inOrder(ui);
+        order.verify(ui).placeCard(7, 0);
+        order.verify(ui).placeToken(1, 0);
+        order.verify(ui).setScore(1, 3);
+        lazy.dispose();
+        verify(ui).dispose();
+    }
+
+    @Test
+    void runsWithoutUserInterface() {
+        UserInterfaceLazy lazy = new UserInterfaceLazy(() -> null);
+        lazy.placeCard(7, 0);
+        lazy.dispose();
+        assertTrue(lazy.ready());
+    }
+}
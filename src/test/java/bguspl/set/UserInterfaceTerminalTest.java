@@ -0,0 +1,136 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserInterfaceTerminalTest {
+
+    private static final Pattern CURSOR = Pattern.compile("\u001b\\[(\\d+);(\\d+)H");
+    private static final Pattern ESCAPE = Pattern.compile("\u001b\\[[0-9;?]*[A-Za-z]");
+
+    private Config config;
+    private Util util;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.put("LogLevel", "OFF");
+        properties.put("TerminalFrameRate", "100");
+        config = new Config(Logger.getAnonymousLogger(), properties);
+        util = new UtilImpl(config);
+    }
+
+    /**
+     * @return - everything written to the terminal so far.
+     */
+    private String output() {
+        synchronized (buffer) {
+            return buffer.toString();
+        }
+    }
+
+    /**
+     * Waits (up to 5 seconds) until the terminal output contains the text.
+     *
+     * @return - the output.
+     */
+    private String awaitOutput(String text) throws InterruptedException {
+        for (int i = 0; i < 500 && !output().contains(text); i++)
+            Thread.sleep(10);
+        assertTrue(output().contains(text), output());
+        return output();
+    }
+
+    /**
+     * Replays the terminal output (cursor moves and characters, ignoring the colors) onto a screen.
+     *
+     * @return - the screen rows.
+     */
+    private static String[] screen(String output) {
+        char[][] rows = new char[40][120];
+        for (char[] row : rows)
+            Arrays.fill(row, ' ');
+        int row = 0, column = 0, i = 0;
+        while (i < output.length()) {
+            Matcher escape = ESCAPE.matcher(output).region(i, output.length());
+            if (escape.lookingAt()) {
+                Matcher cursor = CURSOR.matcher(escape.group());
+                if (cursor.matches()) {
+                    row = Integer.parseInt(cursor.group(1)) - 1;
+                    column = Integer.parseInt(cursor.group(2)) - 1;
+                }
+                i = escape.end();
+                continue;
+            }
+            if (row < rows.length && column < rows[row].length) rows[row][column] = output.charAt(i);
+            ++column;
+            ++i;
+        }
+        String[] lines = new String[rows.length];
+        for (int r = 0; r < rows.length; r++)
+            lines[r] = new String(rows[r]).replaceAll("\\s+$", "");
+        return lines;
+    }
+
+    private String cardText(int card) {
+        StringBuilder text = new StringBuilder("[");
+        for (int feature : util.cardToFeatures(card))
+            text.append(' ').append(feature);
+        return text.append(" ]").toString();
+    }
+
+    @Test
+    void gameStateIsDrawn() {
+        UserInterfaceTerminal ui = new UserInterfaceTerminal(config, util, new PrintStream(buffer, true));
+        ui.placeCard(5, 0);
+        ui.placeCard(40, 1);
+        ui.placeToken(1, 1);
+        ui.setScore(1, 3);
+        ui.setFreeze(0, 2000);
+        ui.setCountdown(30000, false);
+        ui.announceWinner(new int[]{1});
+        ui.dispose();
+
+        String[] screen = screen(output());
+        assertEquals("Countdown: 30", screen[0]);
+        assertTrue(screen[2].startsWith(cardText(5)), screen[2]);
+        assertTrue(screen[2].substring(14).startsWith(cardText(40)), screen[2]);
+        assertTrue(screen[2].substring(28).startsWith("[          ]"), screen[2]); // an empty grid slot
+        assertEquals("2", screen[3].trim());
+        String scores = String.join("\n", screen);
+        assertTrue(scores.contains(String.format("%-16.16s %4d  frozen 2s", config.playerNames[0], 0)), scores);
+        assertTrue(scores.contains(String.format("%-16.16s %4d", config.playerNames[1], 3)), scores);
+        assertTrue(scores.contains("THE WINNER IS: " + config.playerNames[1]), scores);
+        // the cursor is shown again below the screen
+        assertTrue(output().endsWith("H\u001b[?25h"), output());
+    }
+
+    @Test
+    void onlyChangesAreRedrawn() throws InterruptedException {
+        UserInterfaceTerminal ui = new UserInterfaceTerminal(config, util, new PrintStream(buffer, true));
+        ui.placeCard(5, 0);
+        int shown = awaitOutput(cardText(5)).length();
+
+        ui.setScore(0, 7);
+        for (int i = 0; i < 500 && output().length() == shown; i++)
+            Thread.sleep(10);
+        String change = output().substring(shown);
+        ui.dispose();
+
+        // the score's last digit is all that changed
+        assertEquals("7", ESCAPE.matcher(change).replaceAll(""), change);
+        assertTrue(String.join("\n", screen(output())).contains(
+                String.format("%-16.16s %4d", config.playerNames[0], 7)));
+    }
+}
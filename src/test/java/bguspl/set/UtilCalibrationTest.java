@@ -0,0 +1,89 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UtilCalibrationTest {
+
+    private static Config config(String featureSize, String featureCount, String engine) {
+        Properties properties = new Properties();
+        properties.put("LogLevel", "OFF");
+        properties.put("FeatureSize", featureSize);
+        properties.put("FeatureCount", featureCount);
+        properties.put("Seed", "7");
+        properties.put("UtilEngine", engine);
+        properties.put("UtilCalibrationSeconds", "0.02");
+        return new Config(Logger.getAnonymousLogger(), properties);
+    }
+
+    private static List<String> names(List<UtilEngine> engines) {
+        return engines.stream().map(UtilEngine::name).collect(Collectors.toList());
+    }
+
+    @Test
+    void enginesAreDiscoveredForTheDecksTheySupport() {
+        assertEquals(List.of("reference", "packed", "table"), names(UtilCalibration.engines(config("3", "4", ""))));
+        assertEquals(List.of("reference", "packed"), names(UtilCalibration.engines(config("4", "3", ""))));
+        assertEquals(List.of("reference"), names(UtilCalibration.engines(config("9", "8", ""))));
+    }
+
+    @Test
+    void enginesAgreeWithTheReferenceEngine() {
+        for (Config config : List.of(config("3", "4", ""), config("4", "3", ""), config("2", "5", ""))) {
+            Util reference = new UtilImpl(config);
+            Random random = new Random(1);
+            List<Integer> deck = new ArrayList<>();
+            for (int card = 0; card < config.deckSize; ++card)
+                deck.add(card);
+
+            for (UtilEngine engine : UtilCalibration.engines(config)) {
+                Util util = engine.create(config);
+                for (int i = 0; i < 100; ++i) {
+                    Collections.shuffle(deck, random);
+                    List<Integer> table = deck.subList(0, Math.min(12, deck.size()));
+                    List<int[]> expected = reference.findSets(table, Integer.MAX_VALUE);
+                    List<int[]> actual = util.findSets(table, Integer.MAX_VALUE);
+                    assertEquals(expected.size(), actual.size(), engine.name());
+                    for (int j = 0; j < expected.size(); ++j)
+                        assertArrayEquals(expected.get(j), actual.get(j), engine.name());
+                    assertArrayEquals(reference.findSets(deck, 1).get(0), util.findSets(deck, 1).get(0), engine.name());
+
+                    int[] claim = deck.subList(0, config.featureSize).stream().mapToInt(Integer::intValue).toArray();
+                    assertEquals(reference.testSet(claim), util.testSet(claim), engine.name() + Arrays.toString(claim));
+                    for (int[] set : expected)
+                        assertTrue(util.testSet(set), engine.name() + Arrays.toString(set));
+                }
+            }
+        }
+    }
+
+    @Test
+    void calibrationPicksTheFastestEngine() {
+        Config config = config("3", "4", "");
+        List<UtilCalibration.Timing> timings = UtilCalibration.calibrate(Logger.getAnonymousLogger(), config,
+                UtilCalibration.engines(config));
+        assertEquals(3, timings.size());
+        timings.forEach(timing -> assertTrue(timing.rounds > 0, timing.toString()));
+
+        UtilEngine selected = UtilCalibration.select(Logger.getAnonymousLogger(), config);
+        // the reference engine tests every triple, and is far slower than the others on a whole deck
+        assertNotEquals("reference", selected.name());
+    }
+
+    @Test
+    void configurationOverridesTheCalibration() {
+        assertEquals("packed", UtilCalibration.select(Logger.getAnonymousLogger(), config("3", "4", "packed")).name());
+        // the table engine only supports features of 3 values
+        assertNotEquals("table", UtilCalibration.select(Logger.getAnonymousLogger(), config("4", "3", "table")).name());
+    }
+}
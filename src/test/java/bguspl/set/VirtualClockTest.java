@@ -0,0 +1,96 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VirtualClockTest {
+
+    private final VirtualClock clock = new VirtualClock();
+
+    @Test
+    void sleepJumpsToTheDeadline() throws InterruptedException {
+        clock.addParticipant(Thread.currentThread());
+        clock.sleep(60000);
+        assertEquals(60000, clock.millis());
+        clock.sleep(0);
+        assertEquals(60000, clock.millis());
+        clock.removeParticipant(Thread.currentThread());
+    }
+
+    @Test
+    void timeStandsStillWhileAParticipantWorks() throws InterruptedException {
+        AtomicLong woke = new AtomicLong(-1);
+        Thread sleeper = new Thread(() -> {
+            try {
+                clock.sleep(500);
+                woke.set(clock.millis());
+            } catch (InterruptedException ignored) {
+            }
+            clock.removeParticipant(Thread.currentThread());
+        });
+        clock.addParticipant(Thread.currentThread());
+        clock.addParticipant(sleeper);
+        sleeper.start();
+
+        // this thread is working, so the sleeper's deadline is not reached
+        sleeper.join(100);
+        assertTrue(sleeper.isAlive());
+        assertEquals(0, clock.millis());
+
+        // the nearest deadline is this thread's
+        clock.sleep(100);
+        assertEquals(100, clock.millis());
+        assertTrue(sleeper.isAlive());
+
+        clock.removeParticipant(Thread.currentThread());
+        sleeper.join();
+        assertEquals(500, woke.get());
+    }
+
+    @Test
+    void wokenWaiterStopsTheTimeUntilItIsIdleAgain() throws InterruptedException {
+        Object monitor = new Object();
+        boolean[] ready = new boolean[1];
+        AtomicLong woke = new AtomicLong(-1);
+        Thread waiter = new Thread(() -> {
+            try {
+                synchronized (monitor) {
+                    while (!ready[0]) clock.waitOn(monitor);
+                }
+                woke.set(clock.millis());
+            } catch (InterruptedException ignored) {
+            }
+            clock.removeParticipant(Thread.currentThread());
+        });
+        clock.addParticipant(Thread.currentThread());
+        clock.addParticipant(waiter);
+        waiter.start();
+
+        synchronized (monitor) {
+            ready[0] = true;
+            clock.wake(monitor);
+        }
+        // without the wake, the waiter would still count as idle and the time would jump before it sees ready
+        clock.sleep(1000);
+        waiter.join();
+        assertEquals(0, woke.get());
+        assertEquals(1000, clock.millis());
+        clock.removeParticipant(Thread.currentThread());
+    }
+
+    @Test
+    void timedWaitEndsAtItsVirtualDeadline() throws InterruptedException {
+        Object monitor = new Object();
+        clock.addParticipant(Thread.currentThread());
+        synchronized (monitor) {
+            long deadline = clock.millis() + 250;
+            for (long left = 250; left > 0; left = deadline - clock.millis())
+                clock.waitOn(monitor, left);
+        }
+        assertEquals(250, clock.millis());
+        clock.removeParticipant(Thread.currentThread());
+    }
+}
@@ -0,0 +1,269 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UserInterface;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+import bguspl.set.VirtualClock;
+import com.sun.management.ThreadMXBean;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Logger;
+
+/**
+ * Measures the bytes the game allocates, using the JVM's per-thread allocation counters.
+ * A game's allocations are attributed to the dealer (the dealer and verifier threads), the players (the player
+ * threads), the AI (the computer threads) and the util (the Util calls made by any of them), and are reported per
+ * dealt card, per key press (a token placed or removed by a player), per claim and per findSets call.
+ */
+class AllocationProfiler {
+
+    enum Subsystem {DEALER, PLAYER, AI, UTIL}
+
+    private static final ThreadMXBean THREADS = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * @return - true iff the JVM counts the bytes allocated per thread.
+     */
+    static boolean supported() {
+        return THREADS.isThreadAllocatedMemorySupported() && THREADS.isThreadAllocatedMemoryEnabled();
+    }
+
+    /**
+     * @return - the bytes allocated by the current thread so far.
+     */
+    static long allocated() {
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * @param workload - the workload (run on the current thread).
+     * @param calls    - the number of calls measured (after as many warm-up calls).
+     * @return - the average bytes allocated per call.
+     */
+    static double perCall(Runnable workload, int calls) {
+        for (int i = 0; i < calls; i++)
+            workload.run();
+        long before = allocated();
+        for (int i = 0; i < calls; i++)
+            workload.run();
+        return (double) (allocated() - before) / calls;
+    }
+
+    private static Subsystem subsystemOf(Thread thread) {
+        if (thread.getName().startsWith("computer-")) return Subsystem.AI;
+        if (thread.getName().startsWith("player-")) return Subsystem.PLAYER;
+        return Subsystem.DEALER;
+    }
+
+    /**
+     * The allocations of a game.
+     */
+    static class Report {
+
+        final long[] bytes = new long[Subsystem.values().length];
+        long cards;
+        long keyPresses;
+        long claims;
+        long findSets;
+
+        /**
+         * @param subsystem - the subsystem.
+         * @param units     - the number of units (e.g. cards).
+         * @return - the subsystem's bytes per unit.
+         */
+        double per(Subsystem subsystem, long units) {
+            return (double) bytes[subsystem.ordinal()] / Math.max(1, units);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(String.format("%d cards, %d key presses, %d claims, %d findSets%n",
+                    cards, keyPresses, claims, findSets));
+            sb.append(String.format("%-8s %12s %10s %10s %10s %10s%n",
+                    "", "bytes", "per card", "per press", "per claim", "per find"));
+            for (Subsystem subsystem : Subsystem.values())
+                sb.append(String.format("%-8s %12d %10.0f %10.0f %10.0f %10.0f%n", subsystem,
+                        bytes[subsystem.ordinal()], per(subsystem, cards), per(subsystem, keyPresses),
+                        per(subsystem, claims), per(subsystem, findSets)));
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Plays a computer player game with virtual time, and reports its allocations.
+     *
+     * @param properties - the game settings.
+     * @return - the allocations of the game's threads until the winners were announced.
+     */
+    static Report game(Properties properties) throws InterruptedException {
+        Logger logger = Logger.getAnonymousLogger();
+        Config config = new Config(logger, properties);
+        Report report = new Report();
+        ThreadGroup group = new ThreadGroup("allocation-profiler");
+        CountingUtil util = new CountingUtil(new UtilImpl(config));
+        CountingInterface ui = new CountingInterface(group, util, report);
+        Env env = new Env(logger, config, ui, util).withClock(new VirtualClock());
+
+        Player[] players = new Player[config.players];
+        Table table = new Table(env);
+        AtomicLong claims = new AtomicLong();
+        Dealer dealer = new Dealer(env, table, players) {
+            @Override
+            void checkSets(List<Claim> batch) throws InterruptedException {
+                claims.addAndGet(batch.size());
+                super.checkSets(batch);
+            }
+        };
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, false);
+
+        Thread dealerThread = new Thread(group, dealer, "dealer");
+        dealerThread.start();
+        dealerThread.join();
+        for (Player player : players)
+            player.terminate();
+        report.claims = claims.get();
+        report.findSets = util.findSets.get();
+        return report;
+    }
+
+    /**
+     * A util that counts the findSets calls, and measures the bytes its calls allocate
+     * per calling subsystem.
+     */
+    private static class CountingUtil implements Util {
+
+        private final Util util;
+        final AtomicLong findSets = new AtomicLong();
+        final AtomicLongArray bytes = new AtomicLongArray(Subsystem.values().length);
+
+        CountingUtil(Util util) {
+            this.util = util;
+        }
+
+        private void allocatedSince(long before) {
+            bytes.addAndGet(subsystemOf(Thread.currentThread()).ordinal(), allocated() - before);
+        }
+
+        @Override
+        public int[] cardToFeatures(int card) {
+            long before = allocated();
+            int[] features = util.cardToFeatures(card);
+            allocatedSince(before);
+            return features;
+        }
+
+        @Override
+        public int[][] cardsToFeatures(int[] cards) {
+            long before = allocated();
+            int[][] features = util.cardsToFeatures(cards);
+            allocatedSince(before);
+            return features;
+        }
+
+        @Override
+        public boolean testSet(int[] cards) {
+            long before = allocated();
+            boolean legal = util.testSet(cards);
+            allocatedSince(before);
+            return legal;
+        }
+
+        @Override
+        public List<int[]> findSets(List<Integer> deck, int count) {
+            findSets.incrementAndGet();
+            long before = allocated();
+            List<int[]> sets = util.findSets(deck, count);
+            allocatedSince(before);
+            return sets;
+        }
+
+        @Override
+        public void spin() {
+            util.spin();
+        }
+    }
+
+    /**
+     * A user interface that counts the dealt cards and the players' token changes, and takes the allocation counters
+     * of the game's threads when the winners are announced (while all of them are still alive).
+     */
+    private static class CountingInterface implements UserInterface {
+
+        private final ThreadGroup group;
+        private final CountingUtil util;
+        private final Report report;
+        private final AtomicLong cards = new AtomicLong();
+        private final AtomicLong keyPresses = new AtomicLong();
+
+        CountingInterface(ThreadGroup group, CountingUtil util, Report report) {
+            this.group = group;
+            this.util = util;
+            this.report = report;
+        }
+
+        private void tokenChanged() {
+            if (subsystemOf(Thread.currentThread()) == Subsystem.PLAYER) keyPresses.incrementAndGet();
+        }
+
+        @Override
+        public void placeCard(int card, int slot) {
+            cards.incrementAndGet();
+        }
+
+        @Override
+        public void removeCard(int slot) {}
+
+        @Override
+        public void placeToken(int player, int slot) {
+            tokenChanged();
+        }
+
+        @Override
+        public void removeTokens() {}
+
+        @Override
+        public void removeTokens(int slot) {}
+
+        @Override
+        public void removeToken(int player, int slot) {
+            tokenChanged();
+        }
+
+        @Override
+        public void setCountdown(long millies, boolean warn) {}
+
+        @Override
+        public void setElapsed(long millies) {}
+
+        @Override
+        public void setFreeze(int player, long millies) {}
+
+        @Override
+        public void setScore(int player, int score) {}
+
+        @Override
+        public void announceWinner(int[] players) {
+            Thread[] threads = new Thread[group.activeCount() * 2];
+            int count = group.enumerate(threads);
+            for (int i = 0; i < count; i++)
+                report.bytes[subsystemOf(threads[i]).ordinal()] += THREADS.getThreadAllocatedBytes(threads[i].getId());
+            for (Subsystem subsystem : Subsystem.values()) {
+                long utilBytes = util.bytes.get(subsystem.ordinal());
+                report.bytes[subsystem.ordinal()] -= utilBytes;
+                report.bytes[Subsystem.UTIL.ordinal()] += utilBytes;
+            }
+            report.cards = cards.get();
+            report.keyPresses = keyPresses.get();
+        }
+
+        @Override
+        public void dispose() {}
+    }
+}
@@ -0,0 +1,162 @@
+package bguspl.set.ex;
+
+import bguspl.set.Clock;
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.SystemClock;
+import bguspl.set.UtilImpl;
+import com.sun.management.ThreadMXBean;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+
+import static bguspl.set.ex.AllocationProfiler.Subsystem.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Allocation budgets: a change that makes the game allocate more garbage than these fails the build.
+ */
+class AllocationTest {
+
+    private Properties properties;
+
+    @BeforeEach
+    void setUp() {
+        assumeTrue(AllocationProfiler.supported(), "no per-thread allocation counters");
+        properties = new Properties();
+        properties.put("LogLevel", "OFF");
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "2");
+        properties.put("Seed", "7");
+        properties.put("VirtualTime", "true");
+        properties.put("Hints", "false");
+    }
+
+    @Test
+    void gameAllocationsStayWithinBudget() throws InterruptedException {
+        AllocationProfiler.Report report = AllocationProfiler.game(properties);
+
+        assertTrue(report.cards > 0 && report.keyPresses > 0 && report.claims > 0, report.toString());
+        assertTrue(report.per(DEALER, report.cards) < 1024, report.toString());
+        assertTrue(report.per(DEALER, report.claims) < 256, report.toString());
+        // only the threads' start up allocates, the key presses and claims themselves allocate nothing
+        assertTrue(report.per(PLAYER, report.keyPresses) < 16, report.toString());
+        assertTrue(report.per(AI, report.keyPresses) < 16, report.toString());
+        assertTrue(report.per(UTIL, report.findSets + report.claims) < 4096, report.toString());
+    }
+
+    @Test
+    void keyPressesAndClaimsAllocateNothing() {
+        Config config = new Config(Logger.getAnonymousLogger(), properties);
+        UtilImpl util = new UtilImpl(config);
+        Clock clock = new SystemClock();
+        KeyPressQueue presses = new KeyPressQueue(clock, 3);
+        ClaimQueue claims = new ClaimQueue(clock, 2);
+        Claim claim = new Claim(1, new int[]{0, 1, 2}, 0);
+
+        double bytes = AllocationProfiler.perCall(() -> {
+            try {
+                presses.offer(7L << 32 | 5);
+                presses.poll(0);
+                claim.renew(System.nanoTime(), 7);
+                claims.submit(claim);
+                util.testSet(claims.poll(0).cards);
+                claims.done(claim.player);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }, 10000);
+
+        assertTrue(bytes < 1, bytes + " bytes per key press and claim");
+    }
+
+    /**
+     * Waits (up to 5 seconds) until the condition holds.
+     */
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.onSpinWait();
+        }
+    }
+
+    @Test
+    void pressesAndClaimsThroughThePlayerTableAndDealerAllocateNothing() throws InterruptedException {
+        properties.put("HumanPlayers", "1");
+        properties.put("ComputerPlayers", "0");
+        properties.put("TableDelaySeconds", "0");
+        properties.put("PenaltyFreezeSeconds", "0");
+        Config config = new Config(Logger.getAnonymousLogger(), properties);
+        Env env = new Env(Logger.getAnonymousLogger(), config, new TableTest.MockUserInterface(), new UtilImpl(config));
+        Table table = new Table(env);
+        Player[] players = new Player[1];
+        Dealer dealer = new Dealer(env, table, players);
+        Player player = players[0] = new Player(env, dealer, table, 0, true);
+        dealer.placeCardsOnTable();
+        // three slots whose cards are not a set, so a claim of them is penalized and the cards stay
+        int third = 2;
+        while (env.util.testSet(new int[]{table.cardAt(0), table.cardAt(1), table.cardAt(third)}))
+            ++third;
+        int[] slots = {0, 1, third};
+        Thread thread = new Thread(player, "player-0");
+        thread.start();
+        for (int slot = 0; slot < 2; slot++) {
+            int placed = slot;
+            player.keyPressed(slot);
+            await(() -> table.hasToken(0, placed));
+        }
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        List<Claim> batch = new ArrayList<>();
+        int cycles = 2000;
+        long playerBytes = 0, dealerBytes = 0;
+
+        // each cycle, the player places its third token, claims the cards, is penalized and takes the token off (two
+        // key presses and a claim); the first half of the cycles is the warm-up
+        for (int cycle = 0; cycle < 2 * cycles; cycle++) {
+            await(() -> thread.getState() == Thread.State.TIMED_WAITING); // polling for key presses, not frozen
+            long playerBefore = threads.getThreadAllocatedBytes(thread.getId());
+            player.keyPressed(slots[2]);
+
+            long dealerBefore = AllocationProfiler.allocated();
+            batch.add(dealer.getClaims().poll(5000));
+            dealer.checkSets(batch);
+            batch.clear();
+            long dealerAfter = AllocationProfiler.allocated();
+
+            await(() -> thread.getState() == Thread.State.TIMED_WAITING);
+            player.keyPressed(slots[2]);
+            await(() -> !table.hasToken(0, slots[2]));
+            long playerAfter = threads.getThreadAllocatedBytes(thread.getId());
+            if (cycle >= cycles) {
+                playerBytes += playerAfter - playerBefore;
+                dealerBytes += dealerAfter - dealerBefore;
+            }
+        }
+        player.terminate();
+
+        assertEquals(0, player.score());
+        assertTrue((double) playerBytes / (2 * cycles) < 1, playerBytes + " player bytes in " + 2 * cycles + " presses");
+        assertTrue((double) playerBytes / cycles < 1, playerBytes + " player bytes in " + cycles + " claims");
+        assertTrue((double) dealerBytes / cycles < 1, dealerBytes + " dealer bytes in " + cycles + " claims");
+    }
+
+    @Test
+    void findSetsAllocationsStayWithinBudget() {
+        UtilImpl util = new UtilImpl(new Config(Logger.getAnonymousLogger(), properties));
+        List<Integer> table = new ArrayList<>();
+        for (int card = 0; card < 12; card++)
+            table.add(card * 5);
+
+        double bytes = AllocationProfiler.perCall(() -> util.findSets(table, Integer.MAX_VALUE), 1000);
+
+        assertTrue(bytes < 256 * 1024, bytes + " bytes per findSets call");
+    }
+}
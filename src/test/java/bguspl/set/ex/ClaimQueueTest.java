@@ -0,0 +1,102 @@
+package bguspl.set.ex;
+
+import bguspl.set.SystemClock;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClaimQueueTest {
+
+    private final ClaimQueue claims = new ClaimQueue(new SystemClock(), 2);
+
+    @Test
+    void playerHasAtMostOnePendingClaim() {
+        Claim first = new Claim(0, new int[]{0, 1, 2}, 1);
+        Claim second = new Claim(0, new int[]{3, 4, 5}, 2);
+
+        assertTrue(claims.submit(first));
+        assertTrue(claims.isPending(0));
+        assertFalse(claims.submit(second));
+        assertFalse(claims.isPending(1));
+
+        assertSame(first, claims.poll());
+        assertNull(claims.poll());
+        // still pending until the verdict
+        assertFalse(claims.submit(second));
+        claims.done(0);
+        assertFalse(claims.isPending(0));
+        assertTrue(claims.submit(second));
+    }
+
+    @Test
+    void claimsArePolledInSubmissionOrder() throws InterruptedException {
+        Claim first = new Claim(1, new int[]{0, 1, 2}, 1);
+        Claim second = new Claim(0, new int[]{3, 4, 5}, 2);
+        claims.submit(first);
+        claims.submit(second);
+
+        assertSame(first, claims.poll(0));
+        assertSame(second, claims.poll(0));
+        assertNull(claims.poll(0));
+    }
+
+    @Test
+    void queueGrowsWhenFlagsAreClearedWhileClaimsAreQueued() {
+        Claim[] submitted = new Claim[5];
+        for (int i = 0; i < submitted.length; i++) {
+            submitted[i] = new Claim(i % 2, new int[]{0, 1, 2}, i);
+            assertTrue(claims.submit(submitted[i]));
+            claims.done(i % 2); // e.g. the turn ended before the claim was read
+        }
+
+        for (Claim claim : submitted)
+            assertSame(claim, claims.poll());
+        assertNull(claims.poll());
+    }
+
+    @Test
+    void pollWaitsForAClaim() throws InterruptedException {
+        Claim claim = new Claim(1, new int[]{0, 1, 2}, 1);
+        Thread submitter = new Thread(() -> claims.submit(claim));
+        submitter.start();
+
+        assertSame(claim, claims.poll(10000));
+        submitter.join();
+    }
+
+    @Test
+    void voidingClearsTheQueueAndTheFlags() {
+        claims.submit(new Claim(0, new int[]{0, 1, 2}, 1));
+        claims.submit(new Claim(1, new int[]{3, 4, 5}, 2));
+
+        claims.voidAll();
+
+        assertNull(claims.poll());
+        assertFalse(claims.isPending(0));
+        assertFalse(claims.isPending(1));
+        Claim again = new Claim(0, new int[]{0, 1, 2}, 3);
+        assertTrue(claims.submit(again));
+        assertSame(again, claims.poll());
+        assertNull(claims.poll());
+    }
+
+    @Test
+    void claimIsNeverQueuedTwiceWhileTurnsEnd() throws InterruptedException {
+        Claim claim = new Claim(0, new int[]{0, 1, 2}, 1);
+        Thread player = new Thread(() -> {
+            for (int i = 0; i < 100000; i++)
+                claims.submit(claim);
+        });
+        player.start();
+        while (player.isAlive()) {
+            claims.voidAll(); // the end of a turn
+            Claim queued = claims.poll();
+            if (queued == null) continue;
+            // a claim is queued only with its flag set, and at most once
+            assertTrue(claims.isPending(0));
+            assertNull(claims.poll());
+            claims.done(0);
+        }
+        player.join();
+    }
+}
@@ -4,6 +4,7 @@ import bguspl.set.Config;
 import bguspl.set.Env;
 import bguspl.set.UserInterface;
 import bguspl.set.Util;
+import bguspl.set.UtilImpl;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,11 +12,18 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
 import java.util.logging.Logger;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -31,8 +39,8 @@ class DealerTest {
 
     private Table table;
 
-    private Integer[] slotToCard;
-    private Integer[] cardToSlot;
+    private int[] slotToCard;
+    private int[] cardToSlot;
     private Player[] players;
     @Mock
     private Logger logger;
@@ -59,7 +67,333 @@ class DealerTest {
         Env env = new Env(logger, new Config(logger, (String) null), ui, util);
         Player player = new Player(env,dealer,table,0,true);
         int card = player.getPotentialSet()[0];
-        assertNull(table.cardToSlot[card]);
+        assertEquals(Table.EMPTY, table.slotOf(card));
 
     }
-}
\ No newline at end of file
+
+    /**
+     * @param settings - configuration keys and values.
+     * @return - an environment with a real util and the given settings (and the defaults otherwise).
+     */
+    private Env gameEnv(String... settings) {
+        Properties properties = new Properties();
+        properties.put("TableDelaySeconds", "0");
+        for (int i = 0; i < settings.length; i += 2)
+            properties.put(settings[i], settings[i + 1]);
+        Config config = new Config(logger, properties);
+        return new Env(logger, config, new TableTest.MockUserInterface(), new UtilImpl(config));
+    }
+
+    /**
+     * Creates a dealer with (spied, not running) human players and deals the table.
+     */
+    private Dealer deal(Env env, Table table, Player[] players) {
+        Dealer dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = spy(new Player(env, dealer, table, i, true));
+        dealer.placeCardsOnTable();
+        return dealer;
+    }
+
+    /**
+     * Places the player's tokens on the cards and submits its claim of them.
+     */
+    private static Claim claim(Dealer dealer, Table table, Player player, int[] cards, long time) {
+        for (int card : cards) {
+            player.addToPotentialSet(card);
+            table.placeToken(player.getId(), table.slotOf(card));
+        }
+        Claim claim = new Claim(player.getId(), cards.clone(), time);
+        assertTrue(dealer.getClaims().submit(claim));
+        return claim;
+    }
+
+    /**
+     * @return - the queued claims, in the order they were queued.
+     */
+    private static List<Claim> queued(Dealer dealer) {
+        List<Claim> batch = new ArrayList<>();
+        for (Claim claim = dealer.getClaims().poll(); claim != null; claim = dealer.getClaims().poll())
+            batch.add(claim);
+        return batch;
+    }
+
+    private static List<Integer> cardsOn(Table table) {
+        List<Integer> cards = new ArrayList<>();
+        for (int slot = 0; slot < table.size(); slot++)
+            if (table.cardAt(slot) != Table.EMPTY) cards.add(table.cardAt(slot));
+        return cards;
+    }
+
+    @Test
+    void earlierClaimWinsAndLaterClaimOfItsCardsGetsNoVerdict() throws InterruptedException {
+        Env env = gameEnv();
+        Table table = new Table(env);
+        Player[] players = new Player[2];
+        Dealer dealer = deal(env, table, players);
+        int[] set = env.util.findSets(cardsOn(table), 1).get(0);
+
+        // player 1 claimed first, but its claim was queued last
+        claim(dealer, table, players[0], set, 20);
+        claim(dealer, table, players[1], set, 10);
+        dealer.checkSets(queued(dealer));
+
+        verify(players[1]).setFrozenState(1);
+        verify(players[0], never()).setFrozenState(anyInt());
+        for (int card : set)
+            assertFalse(table.isOnTable(card));
+        assertEquals(0, players[0].getPotentialSetSize());
+        assertFalse(dealer.getClaims().isPending(0));
+        assertFalse(dealer.getClaims().isPending(1));
+    }
+
+    @Test
+    void claimsAreVerifiedInParallel() throws InterruptedException {
+        Env env = gameEnv("VerifierThreads", "2");
+        Table table = new Table(env);
+        Player[] players = new Player[2];
+        Dealer dealer = deal(env, table, players);
+        int[] set = env.util.findSets(cardsOn(table), 1).get(0);
+        int[] notSet = notSet(env.util, cardsOn(table), set);
+
+        claim(dealer, table, players[0], set, 10);
+        claim(dealer, table, players[1], notSet, 20);
+        dealer.checkSets(queued(dealer));
+
+        verify(players[0]).setFrozenState(1);
+        verify(players[1]).setFrozenState(3);
+        assertFalse(dealer.getClaims().isPending(0));
+        assertFalse(dealer.getClaims().isPending(1));
+    }
+
+    @Test
+    void interruptedCheckReleasesTheClaims() throws InterruptedException {
+        CountDownLatch verified = new CountDownLatch(1);
+        Env env = gameEnv("VerifierThreads", "2");
+        Env blocking = new Env(logger, env.config, env.ui, new UtilImpl(env.config) {
+            @Override
+            public boolean testSet(int[] cards) {
+                try {
+                    verified.await();
+                } catch (InterruptedException ignored) {
+                }
+                return super.testSet(cards);
+            }
+        });
+        Table table = new Table(blocking);
+        Player[] players = new Player[2];
+        Dealer dealer = deal(blocking, table, players);
+        List<Integer> cards = cardsOn(table);
+
+        claim(dealer, table, players[0], new int[]{cards.get(0), cards.get(1), cards.get(2)}, 10);
+        claim(dealer, table, players[1], new int[]{cards.get(3), cards.get(4), cards.get(5)}, 20);
+        List<Claim> batch = queued(dealer);
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(InterruptedException.class, () -> dealer.checkSets(batch));
+        } finally {
+            Thread.interrupted();
+            verified.countDown();
+        }
+
+        verify(players[0], never()).setFrozenState(anyInt());
+        verify(players[1], never()).setFrozenState(anyInt());
+        assertFalse(dealer.getClaims().isPending(0));
+        assertFalse(dealer.getClaims().isPending(1));
+    }
+
+    /**
+     * @return - three of the cards, none of them in the set, that are not a legal set.
+     */
+    private static int[] notSet(Util util, List<Integer> cards, int[] set) {
+        List<Integer> others = new ArrayList<>(cards);
+        for (int card : set)
+            others.remove(Integer.valueOf(card));
+        for (int i = 0; i < others.size(); i++)
+            for (int j = i + 1; j < others.size(); j++)
+                for (int k = j + 1; k < others.size(); k++) {
+                    int[] claim = {others.get(i), others.get(j), others.get(k)};
+                    if (!util.testSet(claim)) return claim;
+                }
+        throw new AssertionError("no non-set among " + Arrays.toString(others.toArray()));
+    }
+
+    /**
+     * @param sets - the legal sets (each sorted).
+     * @return - an environment with smart dealing, in which only the given sets are legal.
+     */
+    private Env smartDealingEnv(List<int[]> sets, String... settings) {
+        String[] smart = Arrays.copyOf(settings, settings.length + 2);
+        smart[settings.length] = "SmartDealing";
+        smart[settings.length + 1] = "True";
+        return legalSetsEnv(sets, smart);
+    }
+
+    /**
+     * @param sets - the legal sets (each sorted).
+     * @return - an environment in which only the given sets are legal.
+     */
+    private Env legalSetsEnv(List<int[]> sets, String... settings) {
+        Env env = gameEnv(settings);
+        return new Env(logger, env.config, env.ui, new UtilImpl(env.config) {
+            @Override
+            public boolean testSet(int[] cards) {
+                int[] sorted = cards.clone();
+                Arrays.sort(sorted);
+                for (int[] set : sets)
+                    if (Arrays.equals(set, sorted)) return true;
+                return false;
+            }
+        });
+    }
+
+    /**
+     * @return - the next cards the dealer draws from a deck (the dealer's deck is not shuffled until it runs).
+     */
+    private static int[] draw(Deck deck, int cards) {
+        int[] drawn = new int[cards];
+        for (int i = 0; i < cards; i++)
+            drawn[i] = deck.draw();
+        return drawn;
+    }
+
+    private static int[] sorted(int... cards) {
+        int[] sorted = cards.clone();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    @Test
+    void smartDealingSwapsTheFewestCards() {
+        for (String featureSize : new String[]{"3", "4"}) {
+            Config config = gameEnv("FeatureSize", featureSize).config;
+            int size = config.featureSize;
+            Deck order = new Deck(config.deckSize);
+            int[] dealt = draw(order, config.tableSize);
+            int[] rest = draw(order, size);
+            // the table lacks one card of the first set and all but one card of the second
+            int[] first = Arrays.copyOf(dealt, size);
+            first[size - 1] = rest[0];
+            int[] second = Arrays.copyOfRange(rest, 0, size);
+            second[0] = dealt[config.tableSize - 1];
+            Env env = smartDealingEnv(List.of(sorted(first), sorted(second)), "FeatureSize", featureSize);
+            Table table = new Table(env);
+
+            Dealer dealer = deal(env, table, new Player[2]);
+
+            for (int card : first)
+                assertTrue(table.isOnTable(card), featureSize + ": " + card);
+            assertEquals(config.tableSize - 1, Arrays.stream(dealt).filter(table::isOnTable).count());
+            assertEquals(config.tableSize, cardsOn(table).size());
+            assertFalse(dealer.getDeck().contains(rest[0]));
+            assertEquals(config.deckSize - config.tableSize, dealer.getDeck().size());
+        }
+    }
+
+    @Test
+    void smartDealingDealsASetFromTheDeck() {
+        Config config = gameEnv().config;
+        Deck order = new Deck(config.deckSize);
+        int[] dealt = draw(order, config.tableSize);
+        int[] set = draw(order, 3);
+        Env env = smartDealingEnv(List.<int[]>of(sorted(set)));
+        Table table = new Table(env);
+
+        Dealer dealer = deal(env, table, new Player[2]);
+
+        for (int card : set)
+            assertTrue(table.isOnTable(card), Integer.toString(card));
+        assertEquals(config.tableSize - 3, Arrays.stream(dealt).filter(table::isOnTable).count());
+        assertEquals(1, env.util.findSets(cardsOn(table), Integer.MAX_VALUE).size());
+        assertEquals(config.deckSize - config.tableSize, dealer.getDeck().size());
+    }
+
+    @Test
+    void smartDealingStopsWhenTheTableCannotHoldTheSet() {
+        Config config = gameEnv("Rows", "1", "Columns", "2").config;
+        Deck order = new Deck(config.deckSize);
+        draw(order, 2);
+        int[] set = sorted(draw(order, 3));
+        Env env = smartDealingEnv(List.<int[]>of(set), "Rows", "1", "Columns", "2");
+        Table table = new Table(env);
+
+        Dealer dealer = deal(env, table, new Player[2]);
+
+        assertEquals(List.of(set[0], set[1]), cardsOn(table));
+        assertTrue(dealer.getDeck().contains(set[2]));
+        assertEquals(config.deckSize - 2, dealer.getDeck().size());
+    }
+
+    @Test
+    void tableGrowsWhileItHasNoSet() {
+        Config config = gameEnv().config;
+        Deck order = new Deck(config.deckSize);
+        int[] dealt = draw(order, config.tableSize);
+        int[] extra = draw(order, 3);
+        Env env = legalSetsEnv(List.of(sorted(dealt[0], dealt[1], extra[1])), "MaxExtraCards", "6");
+        Table table = new Table(env);
+
+        deal(env, table, new Player[2]);
+
+        assertEquals(config.tableSize + 3, table.size());
+        for (int i = 0; i < extra.length; i++)
+            assertEquals(extra[i], table.cardAt(config.tableSize + i));
+        assertEquals(1, env.util.findSets(cardsOn(table), Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    void extraCardsAndTheirTokensMoveIntoTheGridAfterASet() throws InterruptedException {
+        Config config = gameEnv().config;
+        Deck order = new Deck(config.deckSize);
+        int[] dealt = draw(order, config.tableSize);
+        int[] extra = draw(order, 3);
+        int[] set = sorted(dealt[0], dealt[1], extra[1]);
+        Env env = legalSetsEnv(List.of(set, sorted(dealt[2], dealt[3], extra[2])), "MaxExtraCards", "6");
+        Table table = new Table(env);
+        Player[] players = new Player[2];
+        Dealer dealer = deal(env, table, players);
+        assertEquals(config.tableSize + 3, table.size());
+        players[1].addToPotentialSet(extra[2]);
+        table.placeToken(1, config.tableSize + 2);
+
+        claim(dealer, table, players[0], set, 10);
+        dealer.checkSets(queued(dealer));
+        dealer.placeCardsOnTable();
+
+        // the table still holds a set, so it shrinks back to the grid without new cards
+        assertEquals(config.tableSize, table.size());
+        assertEquals(extra[2], table.cardAt(0));
+        assertEquals(extra[0], table.cardAt(1));
+        assertTrue(table.hasToken(1, 0));
+        assertEquals(1, players[1].getPotentialSetSize());
+        assertEquals(config.deckSize - config.tableSize - 3, dealer.getDeck().size());
+    }
+
+    @Test
+    void tokenOfACardRemovedWhileItIsPlacedIsUndone() throws InterruptedException {
+        Env env = gameEnv();
+        Dealer[] dealer = new Dealer[1];
+        CountDownLatch placing = new CountDownLatch(1);
+        Table table = new Table(env) {
+            @Override
+            public boolean placeToken(int player, int slot, int card) {
+                // the turn ends after the player added the card to its potential set, before its token is placed
+                dealer[0].removeAllCardsFromTableTest();
+                placing.countDown();
+                return super.placeToken(player, slot, card);
+            }
+        };
+        Player[] players = new Player[2];
+        dealer[0] = deal(env, table, players);
+        Thread thread = new Thread(players[0], "player-0");
+        thread.start();
+
+        players[0].keyPressed(0);
+        placing.await();
+        players[0].terminate();
+
+        assertEquals(0, players[0].getPotentialSetSize());
+        assertFalse(table.hasToken(0, 0));
+        assertEquals(0, cardsOn(table).size());
+    }
+}
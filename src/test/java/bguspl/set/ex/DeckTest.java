@@ -0,0 +1,58 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeckTest {
+
+    Deck deck;
+
+    @BeforeEach
+    void setUp() {
+        deck = new Deck(81);
+    }
+
+    @Test
+    void drawAndPut() {
+        int card = deck.draw();
+        assertEquals(80, deck.size());
+        assertFalse(deck.contains(card));
+        deck.put(card);
+        assertEquals(81, deck.size());
+        assertTrue(deck.contains(card));
+    }
+
+    @Test
+    void removeFromTheMiddle() {
+        deck.remove(40);
+        assertEquals(80, deck.size());
+        assertFalse(deck.contains(40));
+        assertEquals(80, deck.draw());
+        assertEquals(79, deck.draw());
+    }
+
+    @Test
+    void shuffleKeepsAllCards() {
+        deck.shuffle(new Random(7));
+        Set<Integer> cards = new HashSet<>();
+        while (!deck.isEmpty())
+            cards.add(deck.draw());
+        assertEquals(81, cards.size());
+    }
+
+    @Test
+    void viewReflectsDeck() {
+        List<Integer> view = deck.view();
+        int card = deck.draw();
+        assertEquals(deck.size(), view.size());
+        assertFalse(view.contains(card));
+        assertThrows(UnsupportedOperationException.class, () -> view.add(card));
+    }
+}
@@ -0,0 +1,84 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UserInterface;
+import bguspl.set.Util;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class HintServiceTest {
+
+    HintService hints;
+    Env env;
+    @Mock
+    Util util;
+    @Mock
+    private UserInterface ui;
+    @Mock
+    private Logger logger;
+
+    @BeforeEach
+    void setUp() {
+        env = new Env(logger, new Config(logger, (String) null), ui, util);
+        hints = new HintService(env);
+    }
+
+    @AfterEach
+    void tearDown() {
+        hints.shutdown();
+    }
+
+    private Table table(int... slotToCard) {
+        return new Table(env, slotToCard, Table.emptyArray(env.config.deckSize));
+    }
+
+    @Test
+    void sameCardsAreSearchedOnce() {
+        List<int[]> sets = Collections.singletonList(new int[]{1, 2, 3});
+        when(util.findSets(anyList(), anyInt())).thenReturn(sets);
+
+        assertSame(sets, hints.findSets(table(1, 2, 3, Table.EMPTY)));
+        // the same cards in other slots
+        assertSame(sets, hints.findSets(table(Table.EMPTY, 3, 1, 2)));
+        verify(util, times(1)).findSets(Arrays.asList(1, 2, 3), Integer.MAX_VALUE);
+
+        hints.findSets(table(1, 2, 4, Table.EMPTY));
+        verify(util, times(2)).findSets(anyList(), anyInt());
+    }
+
+    @Test
+    void hintsAreLogged() {
+        when(util.findSets(anyList(), anyInt())).thenReturn(Collections.singletonList(new int[]{1, 2, 3}));
+        when(util.cardsToFeatures(any())).thenReturn(new int[][]{{0}, {1}, {2}});
+        Table table = table(3, 1, Table.EMPTY, 2);
+
+        hints.request(table);
+        verify(logger, timeout(5000)).info("Hint: Set found: slots: [0, 1, 3] features: [[0], [1], [2]]");
+        hints.request(table); // the same table is not logged again
+        hints.shutdown();
+        verify(logger, never()).info(startsWith("Hint: Set found: slots: [0, 1, 2]"));
+        verify(util, times(1)).findSets(anyList(), anyInt());
+    }
+}
@@ -0,0 +1,75 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.Journal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalReplayTest {
+
+    private File file;
+    private Config config;
+    private TableTest.MockLogger logger;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Properties properties = new Properties();
+        properties.put("Rows", "2");
+        properties.put("Columns", "2");
+        properties.put("TableDelaySeconds", "0");
+        properties.put("PlayerKeys1", "81,87,69,82");
+        properties.put("PlayerKeys2", "85,73,79,80");
+        logger = new TableTest.MockLogger();
+        config = new Config(logger, properties);
+        file = File.createTempFile("journal", ".bin");
+    }
+
+    @AfterEach
+    void tearDown() {
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    @Test
+    void replayRestoresTable() throws IOException {
+        Journal journal = Journal.open(logger, file.getPath(), config.players);
+        Env env = new Env(logger, config, new TableTest.MockUserInterface(), new TableTest.MockUtil()).withJournal(journal);
+        Table table = new Table(env);
+        table.placeCard(7, 0);
+        table.placeCard(9, 1);
+        table.placeToken(1, 0);
+        table.removeCard(0);
+        journal.claim(1, new int[]{1, 2, 3});
+        journal.verdict(1, false);
+        journal.close();
+
+        Env replayEnv = new Env(logger, config, new TableTest.MockUserInterface(), new TableTest.MockUtil());
+        Table replayed = new Table(replayEnv);
+        ByteBuffer records = Journal.read(file.getPath());
+        JournalReplay replay = new JournalReplay(replayEnv, replayed, 0);
+
+        assertEquals(6, replay.replay(records));
+        assertEquals(Table.EMPTY, replayed.cardAt(0));
+        assertEquals(9, replayed.cardAt(1));
+        assertEquals(1, replayed.slotOf(9));
+        assertEquals(0, replay.getScores()[1]);
+        assertEquals(0, replay.getVerdictMismatches());
+    }
+
+    @Test
+    void disabledJournalRecordsNothing() {
+        Journal journal = Journal.open(logger, "", config.players);
+        assertFalse(journal.enabled());
+        journal.cardPlaced(1, 2);
+        journal.close();
+    }
+}
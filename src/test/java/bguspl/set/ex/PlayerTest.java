@@ -2,8 +2,11 @@ package bguspl.set.ex;
 
 import bguspl.set.Config;
 import bguspl.set.Env;
+import bguspl.set.Tracer;
 import bguspl.set.UserInterface;
 import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+import bguspl.set.VirtualClock;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,6 +14,8 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.List;
+import java.util.Properties;
 import java.util.logging.Logger;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -82,4 +87,58 @@ class PlayerTest {
         assertTrue(player.potentialSetContains(12));
         assertFalse(player.potentialSetContains(10));
     }
-}
\ No newline at end of file
+    @Test
+    void removeFromPotentialSet()
+    {
+        player.addToPotentialSet(4);
+        player.addToPotentialSet(12);
+        player.addToPotentialSet(30);
+        assertFalse(player.addToPotentialSet(50));
+        assertTrue(player.removeFromPotentialSet(12));
+        assertFalse(player.removeFromPotentialSet(12));
+        assertArrayEquals(new int[]{4, 30, -1}, player.getPotentialSet());
+        assertEquals(2, player.getPotentialSetSize());
+    }
+
+    @Test
+    void penaltiesAreTracedWithoutFreezes() throws InterruptedException {
+        Properties properties = new Properties();
+        properties.put("FeatureCount", "3");
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "2");
+        properties.put("PenaltyFreezeSeconds", "0");
+        properties.put("EndGamePauseSeconds", "0");
+        Config config = new Config(logger, properties);
+        Tracer tracer = Tracer.create("trace.csv"); // not exported
+        // every claim is penalized (while the dealer still finds the sets)
+        Util sets = new UtilImpl(config);
+        Util util = new UtilImpl(config) {
+            @Override
+            public boolean testSet(int[] cards) {
+                return false;
+            }
+
+            @Override
+            public List<int[]> findSets(List<Integer> deck, int count) {
+                return sets.findSets(deck, count);
+            }
+        };
+        Env env = new Env(logger, config, new TableTest.MockUserInterface(), util)
+                .withClock(new VirtualClock()).withTracer(tracer);
+        Player[] players = new Player[config.players];
+        Table table = new Table(env);
+        Dealer dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, false);
+
+        Thread dealerThread = new Thread(dealer);
+        dealerThread.start();
+        Thread.sleep(500);
+        dealer.terminate();
+        dealerThread.join();
+
+        String report = tracer.report();
+        assertFalse(report.contains("\nverdict,0,"), report);
+        assertFalse(report.contains("\nui updated,0,"), report);
+    }
+}
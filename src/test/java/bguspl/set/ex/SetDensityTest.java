@@ -0,0 +1,90 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.UtilImpl;
+import bguspl.set.UtilTable;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SetDensityTest {
+
+    private static Config config(String featureSize, String featureCount) {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", featureSize);
+        properties.put("FeatureCount", featureCount);
+        return new Config(Logger.getAnonymousLogger(), properties);
+    }
+
+    @Test
+    void matchesTheKnownDensityOfTheStandardDeck() throws InterruptedException {
+        Config config = config("3", "4");
+        SetDensity.Distribution distribution = new SetDensity.Distribution(4, 3, 12);
+
+        new SetDensity(config, new UtilTable(config)).sample(40000, 200, 2, 7, distribution, null);
+
+        // 220 triples of 12 cards, each a set with probability 1/79; about 3.2% of the tables hold no set
+        assertEquals(220 / 79.0, distribution.expectedSets(), 0.05);
+        assertEquals(0.032, distribution.setFreeProbability(), 0.006);
+        assertEquals(200, distribution.games());
+        assertTrue(distribution.expectedGameSets() > 20 && distribution.expectedGameSets() <= 27);
+    }
+
+    @Test
+    void countsSetsOfAnySize() {
+        Config config = config("4", "2");
+        SetDensity density = new SetDensity(config, new UtilImpl(config));
+        int[] deck = new int[config.deckSize];
+        for (int card = 0; card < deck.length; card++)
+            deck[card] = card;
+        // 2 features of 4 values: 4 rows + 4 columns + 4! diagonals
+        assertEquals(32, density.countSets(deck, deck.length, Integer.MAX_VALUE, null));
+
+        SetDensity.Distribution distribution = new SetDensity.Distribution(2, 4, 12);
+        density.sampleGames(10, new SplittableRandom(1), distribution);
+        assertEquals(10, distribution.games());
+    }
+
+    @Test
+    void distributionsSurviveTheCacheFile() throws IOException {
+        SetDensity.Distribution distribution = new SetDensity.Distribution(4, 3, 12);
+        distribution.addDeal(0);
+        distribution.addDeal(3);
+        distribution.addGame(25, 1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        distribution.write(out);
+
+        SetDensity.Distribution read = SetDensity.Distribution.read(new ByteArrayInputStream(out.toByteArray()));
+        read.add(distribution);
+
+        assertEquals(4, read.deals());
+        assertEquals(0.5, read.setFreeProbability());
+        assertEquals(1.5, read.expectedSets());
+        assertEquals(25, read.expectedGameSets());
+        assertEquals(1, read.expectedTimeouts());
+    }
+
+    @Test
+    void rerunsAddNewSamples() throws InterruptedException {
+        Config config = config("3", "4");
+        SetDensity density = new SetDensity(config, new UtilTable(config));
+        SetDensity.Distribution cached = new SetDensity.Distribution(4, 3, 12);
+        SetDensity.Distribution first = new SetDensity.Distribution(4, 3, 12);
+        SetDensity.Distribution second = new SetDensity.Distribution(4, 3, 12);
+
+        density.sample(0, 100, 1, SetDensity.seed(config, cached), first, null);
+        cached.add(first);
+        density.sample(0, 100, 1, SetDensity.seed(config, cached), second, null);
+
+        assertEquals(config.seed + 100, SetDensity.seed(config, cached));
+        assertFalse(Arrays.equals(first.sets, second.sets) && Arrays.equals(first.timeouts, second.timeouts));
+    }
+}
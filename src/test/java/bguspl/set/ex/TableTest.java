@@ -2,11 +2,18 @@ package bguspl.set.ex;
 
 import bguspl.set.Config;
 import bguspl.set.Env;
+import bguspl.set.LockProfiler;
 import bguspl.set.UserInterface;
 import bguspl.set.Util;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
 import java.util.Properties;
 import java.util.logging.Logger;
@@ -16,8 +23,9 @@ import static org.junit.jupiter.api.Assertions.*;
 class TableTest {
 
     Table table;
-    private Integer[] slotToCard;
-    private Integer[] cardToSlot;
+    private Config config;
+    private int[] slotToCard;
+    private int[] cardToSlot;
 
     @BeforeEach
     void setUp() {
@@ -31,9 +39,9 @@ class TableTest {
         properties.put("PlayerKeys1", "81,87,69,82");
         properties.put("PlayerKeys2", "85,73,79,80");
         MockLogger logger = new MockLogger();
-        Config config = new Config(logger, properties);
-        slotToCard = new Integer[config.tableSize];
-        cardToSlot = new Integer[config.deckSize];
+        config = new Config(logger, properties);
+        slotToCard = Table.emptyArray(config.tableSize);
+        cardToSlot = Table.emptyArray(config.deckSize);
 
         Env env = new Env(logger, config, new MockUserInterface(), new MockUtil());
         table = new Table(env, slotToCard, cardToSlot);
@@ -58,8 +66,9 @@ class TableTest {
     private void placeSomeCardsAndAssert() throws InterruptedException {
         table.placeCard(8, 2);
 
-        assertEquals(8, (int) slotToCard[2]);
-        assertEquals(2, (int) cardToSlot[8]);
+        assertEquals(8, slotToCard[2]);
+        assertEquals(2, cardToSlot[8]);
+        assertTrue(table.isOnTable(8));
     }
 
     @Test
@@ -99,15 +108,76 @@ class TableTest {
     void checkRemoveCard(){
         table.placeCard(12,0);
         table.removeCard(0);
-        assertNull(table.getSlotToCard()[0]);
-        assertNull(table.getCardToSlot()[12]);
+        assertEquals(Table.EMPTY, table.cardAt(0));
+        assertEquals(Table.EMPTY, table.slotOf(12));
+        assertFalse(table.isOnTable(12));
     }
     @Test
     //tries to remove a card that isn't placed on table
     void checkRemoveCardFailure(){
         table.removeCard(0);
         assertTrue(true);
-        assertNull(table.getSlotToCard()[0]);
+        assertEquals(Table.EMPTY, table.cardAt(0));
+    }
+
+    @Test
+    void tokenOwners() {
+        table.placeToken(0, 3);
+        table.placeToken(1, 3);
+        assertEquals(0, table.nextTokenOwner(3, 0));
+        assertEquals(1, table.nextTokenOwner(3, 1));
+        assertTrue(table.removeToken(0, 3));
+        assertFalse(table.removeToken(0, 3));
+        assertEquals(1, table.nextTokenOwner(3, 0));
+        assertEquals(-1, table.nextTokenOwner(3, 2));
+        assertEquals(-1, table.nextTokenOwner(2, 0));
+    }
+
+    @Test
+    void resizeKeepsCardsAndRejectsOccupiedSlots() {
+        table.resize(2);
+        assertEquals(2, table.size());
+        assertEquals(4, table.capacity());
+        table.resize(4);
+        table.placeCard(7, 3);
+        assertThrows(IllegalStateException.class, () -> table.resize(3));
+        table.removeCard(3);
+        table.resize(3);
+        assertEquals(3, table.size());
+        assertThrows(IllegalArgumentException.class, () -> table.resize(5));
+    }
+
+    @Test
+    void tableSectionsAreProfiledEvenWhenTheyFail() {
+        LockProfiler locks = LockProfiler.create(true);
+        Env env = new Env(new MockLogger(), config, new MockUserInterface(), new MockUtil()).withLocks(locks);
+        Table table = new Table(env, slotToCard, cardToSlot);
+
+        table.placeCard(8, 2);
+        table.placeToken(0, 2);
+        assertTrue(table.hasToken(0, 2));
+        assertTrue(table.removeToken(0, 2));
+        assertThrows(IllegalStateException.class, () -> table.resize(2));
+
+        String report = locks.report();
+        for (String site : new String[]{"placeCard", "placeToken", "hasToken", "removeToken", "resize"})
+            assertTrue(report.matches("(?s).*\\n  Table:" + site + "\\s+1 .*"), report);
+    }
+
+    @Test
+    void tableOperationsEmitLockEvents() throws Exception {
+        Path dump = Files.createTempFile("table", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("bguspl.set.TableLock").withThreshold(Duration.ZERO);
+            recording.start();
+            table.placeToken(0, 3);
+            recording.stop();
+            recording.dump(dump);
+            List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+            assertTrue(events.stream().anyMatch(event -> "Table:placeToken".equals(event.getString("operation"))));
+        } finally {
+            Files.deleteIfExists(dump);
+        }
     }
 
     static class MockUserInterface implements UserInterface {
@@ -0,0 +1,105 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UtilImpl;
+import bguspl.set.VirtualClock;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TournamentTest {
+
+    @Test
+    void gamesArePlayedToTheEnd() throws InterruptedException {
+        Properties properties = new Properties();
+        properties.put("LogLevel", "OFF");
+        properties.put("FeatureCount", "3");
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "2");
+        properties.put("Seed", "7");
+        Tournament tournament = new Tournament(Logger.getAnonymousLogger(), properties);
+
+        List<Tournament.GameResult> results = tournament.play(2, 2);
+
+        assertEquals(2, results.size());
+        for (Tournament.GameResult result : results) {
+            assertEquals(2, result.scores.length);
+            assertTrue(result.winners.length > 0);
+        }
+        assertNotEquals(results.get(0).seed, results.get(1).seed);
+    }
+
+    @Test
+    void gamesWithTheSameSeedDealTheSame() throws InterruptedException {
+        List<String> deal = firstDeal("7");
+        assertEquals(12, deal.size());
+        assertEquals(deal, firstDeal("7"));
+        assertNotEquals(deal, firstDeal("8"));
+    }
+
+    /**
+     * Plays a game of computer players on a virtual clock.
+     *
+     * @return - the cards placed before the first card was removed, as "card@slot".
+     */
+    private static List<String> firstDeal(String seed) throws InterruptedException {
+        Properties properties = new Properties();
+        properties.put("LogLevel", "OFF");
+        properties.put("FeatureCount", "3");
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "2");
+        properties.put("Seed", seed);
+        Config config = new Config(Logger.getAnonymousLogger(), properties);
+        List<String> deal = new ArrayList<>();
+        TableTest.MockUserInterface ui = new TableTest.MockUserInterface() {
+            private boolean dealt;
+
+            @Override
+            public synchronized void placeCard(int card, int slot) {
+                if (!dealt) deal.add(card + "@" + slot);
+            }
+
+            @Override
+            public synchronized void removeCard(int slot) {
+                dealt = true;
+            }
+        };
+        Env env = new Env(Logger.getAnonymousLogger(), config, ui, new UtilImpl(config)).withClock(new VirtualClock());
+
+        Player[] players = new Player[config.players];
+        Table table = new Table(env);
+        Dealer dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, false);
+        Thread dealerThread = new Thread(dealer, "dealer-" + seed);
+        dealerThread.start();
+        dealerThread.join();
+        for (Player player : players)
+            player.terminate();
+
+        synchronized (ui) {
+            return new ArrayList<>(deal);
+        }
+    }
+
+    @Test
+    void reportCountsTiesAsPartialWins() {
+        List<Tournament.GameResult> results = Arrays.asList(
+                new Tournament.GameResult(1, new int[]{3, 1}, new int[]{0}, 1000),
+                new Tournament.GameResult(2, new int[]{2, 2}, new int[]{0, 1}, 3000));
+
+        String report = Tournament.report(results);
+
+        assertTrue(report.contains("     1    75.00%       2.50"), report);
+        assertTrue(report.contains("     2    25.00%       1.50"), report);
+        assertTrue(report.contains("    2        2"), report);
+        assertTrue(report.contains("max 3.0"), report);
+    }
+}